@@ -34,6 +34,20 @@ public interface LocalCompress {
 	void compressToStream(BufferedImage image, OutputStream outputStream)
 		throws IOException;
 
+    /**
+     * Compresses a buffered image into a right-sized byte array. Encoders
+     * and intermediate buffers are reused between calls, so this should be
+     * preferred over {@link #compressToStream(BufferedImage, OutputStream)}
+     * with a fresh {@link java.io.ByteArrayOutputStream}.
+     *
+     * @param image
+     *            the buffered image to compress.
+     * @return the encoded image.
+     * @throws IOException
+     *             if there is a problem encoding the image.
+     */
+    byte[] compressToBytes(BufferedImage image) throws IOException;
+
 	/**
 	 * Sets the current compression level for the service. (The default is 85%)
 	 * 
@@ -49,4 +63,21 @@ public interface LocalCompress {
 	 * @return the current compression level
 	 */
 	float getCompressionLevel();
+
+    /**
+     * Sets the image format used for compression, e.g. <code>jpeg</code>
+     * (the default) or the lossless <code>png</code>.
+     *
+     * @param format an ImageIO format name; <code>null</code> or empty
+     * restores the default.
+     * @throws ome.conditions.ApiUsageException if no writer is available for
+     * {@code format}.
+     */
+    void setCompressionFormat(String format);
+
+    /**
+     * Returns the image format used for compression.
+     * @return the current format name
+     */
+    String getCompressionFormat();
 }
@@ -1036,13 +1036,14 @@ public class AdminImpl extends AbstractLevel2Service implements LocalAdmin,
         }
 
         // Detect group mismatch
-        // What would need to be changed?
-        @SuppressWarnings("unchecked")
-        Map<String, Long> locks = getLockingIds(
-                (Class<IObject>) copy.getClass(), copy.getId(), group.getId());
-
-        Long total = locks.get("*");
-        if (total != null && total > 0) {
+        // What would need to be changed? Only counted once a lock is found.
+        final Class<? extends IObject> klass = Utils.trueClass(copy.getClass());
+        final String[][] checks = metadata.getLockChecks(klass);
+        final String groupClause = "and details.group.id <> :group";
+        if (metadata.hasLocks(osf.getSession(), copy.getId(), checks, groupClause, group.getId())) {
+            @SuppressWarnings("unchecked")
+            Map<String, Long> locks = getLockingIds(
+                    (Class<IObject>) copy.getClass(), copy.getId(), group.getId());
             throw new SecurityViolation("Locks: " + locks);
         }
         
@@ -1137,7 +1138,7 @@ public class AdminImpl extends AbstractLevel2Service implements LocalAdmin,
 
         String groupClause = "";
         if (groupId != null) {
-            groupClause = "and details.group.id <> " + groupId;
+            groupClause = "and details.group.id <> :group";
         }
         
         // since it's a managed entity it's class.getName() might
@@ -1147,7 +1148,7 @@ public class AdminImpl extends AbstractLevel2Service implements LocalAdmin,
 
         // the values that could possibly link to this instance.
         final String[][] checks = metadata.getLockChecks(klass);
-        return this.metadata.countLocks(osf.getSession(), id, checks, groupClause);
+        return this.metadata.countLocks(osf.getSession(), id, checks, groupClause, groupId);
 
     }
 
@@ -8,46 +8,106 @@
 package ome.logic;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 import ome.api.local.LocalCompress;
+import ome.conditions.ApiUsageException;
 
 public class CompressImpl implements LocalCompress {
 
+    /** Format name of the default, lossy, encoder. */
+    public static final String JPEG = "jpeg";
+
+    /** Format name of the lossless encoder. */
+    public static final String PNG = "png";
+
+    /** Maximum number of idle writers kept per format. */
+    private static final int POOL_SIZE =
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * Largest buffer returned to {@link #buffers} after a call to
+     * {@link #compressToBytes(BufferedImage)}. Larger images still encode
+     * but their buffer is left to the garbage collector.
+     */
+    private static final int MAX_RETAINED_BUFFER = 1024 * 1024;
+
+    /**
+     * Maximum number of idle buffers kept, so that at most
+     * <code>BUFFER_POOL_SIZE * MAX_RETAINED_BUFFER</code> (8 MB) stays
+     * allocated however many threads have compressed images.
+     */
+    private static final int BUFFER_POOL_SIZE = 8;
+
+    /** Idle, pre-configured writers keyed by format name. */
+    private static final ConcurrentMap<String, BlockingQueue<PooledWriter>>
+        writers = new ConcurrentHashMap<String, BlockingQueue<PooledWriter>>();
+
+    /** Idle output buffers reused across encodes. */
+    private static final BlockingQueue<ReusableOutputStream> buffers =
+            new ArrayBlockingQueue<ReusableOutputStream>(BUFFER_POOL_SIZE);
+
 	/** The default compression quality in fractional percent. */
     private float quality = 0.85F;
-	
+
+    /** The format which {@link #compressToStream} encodes to. */
+    private String format = JPEG;
+
     /* (non-Javadoc)
      * @see ome.api.ICompress#compressToStream(java.awt.image.BufferedImage, java.io.OutputStream)
      */
     public void compressToStream(BufferedImage image, OutputStream outputStream)
     	throws IOException
     {
-        // Get a JPEG image writer
-        ImageWriter jpegWriter =
-        	ImageIO.getImageWritersByFormatName("jpeg").next();
-
-        // Setup the compression value from (0.05, 0.75 and 0.95)
-        ImageWriteParam iwp = jpegWriter.getDefaultWriteParam();
-        iwp.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-        iwp.setCompressionQuality(quality);
+        final PooledWriter pooled = borrow(format);
+        try {
+            // Write straight to the caller's stream, bypassing the
+            // ImageIO service lookup and its optional on-disk cache.
+            final ImageOutputStream imageOutputStream =
+                    new MemoryCacheImageOutputStream(outputStream);
+            try {
+                pooled.writer.setOutput(imageOutputStream);
+                pooled.writer.write(null, new IIOImage(image, null, null),
+                        pooled.param(quality));
+            } finally {
+                imageOutputStream.close();
+            }
+        } finally {
+            release(pooled);
+        }
+    }
 
-        // Write the JPEG to our ByteArray stream
-    	ImageOutputStream imageOutputStream = null;
+    /* (non-Javadoc)
+     * @see ome.api.local.LocalCompress#compressToBytes(java.awt.image.BufferedImage)
+     */
+    public byte[] compressToBytes(BufferedImage image) throws IOException
+    {
+        ReusableOutputStream buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new ReusableOutputStream();
+        }
+        buffer.prepare(estimateSize(image));
         try {
-        	imageOutputStream = ImageIO.createImageOutputStream(outputStream);
-        	jpegWriter.setOutput(imageOutputStream);
-        	jpegWriter.write(null, new IIOImage(image, null, null), iwp);
+            compressToStream(image, buffer);
+            return buffer.toByteArray();
         } finally {
-        	if (imageOutputStream != null)
-        		imageOutputStream.close();
+            if (buffer.capacity() <= MAX_RETAINED_BUFFER) {
+                buffers.offer(buffer);
+            }
         }
     }
 
@@ -58,7 +118,7 @@ public class CompressImpl implements LocalCompress {
 	{
 		quality = percentage;
 	}
-	
+
 	/* (non-Javadoc)
 	 * @see ome.api.ICompress#getCompressionLevel()
 	 */
@@ -66,4 +126,121 @@ public class CompressImpl implements LocalCompress {
 	{
 		return quality;
 	}
+
+    /* (non-Javadoc)
+     * @see ome.api.local.LocalCompress#setCompressionFormat(java.lang.String)
+     */
+    public void setCompressionFormat(String format)
+    {
+        if (format == null || format.trim().isEmpty()) {
+            this.format = JPEG;
+            return;
+        }
+        final String name = format.trim().toLowerCase();
+        if (!ImageIO.getImageWritersByFormatName(name).hasNext()) {
+            throw new ApiUsageException("No image writer for format: " + format);
+        }
+        this.format = name;
+    }
+
+    /* (non-Javadoc)
+     * @see ome.api.local.LocalCompress#getCompressionFormat()
+     */
+    public String getCompressionFormat()
+    {
+        return format;
+    }
+
+    /**
+     * Rough size of the encoded form of <code>image</code> used to size the
+     * output buffer so that it rarely needs to grow.
+     */
+    private int estimateSize(BufferedImage image) {
+        final long pixels = (long) image.getWidth() * image.getHeight();
+        final long estimate = JPEG.equals(format) ? pixels / 2 : pixels * 2;
+        return (int) Math.min(Math.max(estimate, 1024), MAX_RETAINED_BUFFER);
+    }
+
+    private static PooledWriter borrow(String format) {
+        final BlockingQueue<PooledWriter> pool = writers.get(format);
+        if (pool != null) {
+            final PooledWriter pooled = pool.poll();
+            if (pooled != null) {
+                return pooled;
+            }
+        }
+        final Iterator<ImageWriter> it =
+                ImageIO.getImageWritersByFormatName(format);
+        if (!it.hasNext()) {
+            throw new ApiUsageException("No image writer for format: " + format);
+        }
+        return new PooledWriter(format, it.next());
+    }
+
+    private static void release(PooledWriter pooled) {
+        pooled.writer.reset();
+        BlockingQueue<PooledWriter> pool = writers.get(pooled.format);
+        if (pool == null) {
+            final BlockingQueue<PooledWriter> created =
+                    new ArrayBlockingQueue<PooledWriter>(POOL_SIZE);
+            pool = writers.putIfAbsent(pooled.format, created);
+            if (pool == null) {
+                pool = created;
+            }
+        }
+        if (!pool.offer(pooled)) {
+            pooled.writer.dispose();
+        }
+    }
+
+    /**
+     * An {@link ImageWriter} together with its write parameters, which are
+     * only reconfigured when the requested quality changes.
+     */
+    private static class PooledWriter {
+
+        final String format;
+
+        final ImageWriter writer;
+
+        private ImageWriteParam param;
+
+        private float paramQuality = Float.NaN;
+
+        PooledWriter(String format, ImageWriter writer) {
+            this.format = format;
+            this.writer = writer;
+        }
+
+        ImageWriteParam param(float quality) {
+            if (param == null || paramQuality != quality) {
+                param = writer.getDefaultWriteParam();
+                if (param.canWriteCompressed() && JPEG.equals(format)) {
+                    // Setup the compression value from (0.05, 0.75 and 0.95)
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(quality);
+                }
+                paramQuality = quality;
+            }
+            return param;
+        }
+    }
+
+    /**
+     * {@link ByteArrayOutputStream} whose backing array survives
+     * {@link #reset()} and can be pre-sized before each use.
+     */
+    private static class ReusableOutputStream extends ByteArrayOutputStream {
+
+        void prepare(int expected) {
+            reset();
+            if (buf.length < expected) {
+                buf = new byte[expected];
+            }
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
 }
@@ -14,13 +14,17 @@ package ome.logic;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
-import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
@@ -45,6 +49,8 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * implementation of the IConfig service interface.
@@ -112,6 +118,31 @@ public class ConfigImpl extends AbstractLevel2Service implements ApplicationCont
      */
     private final transient ReadWriteLock lock = new ReentrantReadWriteLock();
 
+    /**
+     * Database row which is given a new value on every database write when
+     * {@link #setCacheStamp(boolean)} is enabled.
+     */
+    private static final String STAMP_KEY = "omero.config.stamp";
+
+    /**
+     * Recently read values of database-backed keys. Entries are dropped when
+     * a write through this service completes.
+     */
+    private final transient ConcurrentMap<String, CachedValue> dbValues =
+            new ConcurrentHashMap<String, CachedValue>();
+
+    private transient volatile long cacheTimeout = 0;
+
+    private transient volatile boolean cacheStamp = false;
+
+    private transient volatile long cacheStampInterval = 1000;
+
+    /** The value of {@link #STAMP_KEY} when {@link #dbValues} was cleared. */
+    private transient volatile String lastStamp;
+
+    /** When {@link #STAMP_KEY} was last read. */
+    private transient volatile long lastStampCheck;
+
     /**
      * {@link SqlAction} setter for dependency injection.
      * 
@@ -164,6 +195,47 @@ public class ConfigImpl extends AbstractLevel2Service implements ApplicationCont
         this.db = db;
     }
 
+    /**
+     * Sets for how long a value read from the database is reused before it
+     * is read again. Writes through this service take effect immediately;
+     * writes by other servers sharing the database may take this long to be
+     * seen unless {@link #setCacheStamp(boolean)} is enabled.
+     *
+     * @param cacheTimeout time in milliseconds; zero or less disables caching
+     */
+    public void setCacheTimeout(long cacheTimeout) {
+        this.cacheTimeout = cacheTimeout;
+        dbValues.clear();
+    }
+
+    /**
+     * If enabled, every database write also stores a new version stamp, and
+     * a lookup which would use cached database values first reads the stamp
+     * and drops all cached values if it has changed. Lookups of keys which
+     * are not stored in the database, or not yet cached, never read the
+     * stamp. The stamp is read at most once per
+     * {@link #setCacheStampInterval(long) interval}, so writes made by other
+     * servers are seen within that time.
+     *
+     * @param cacheStamp if the version stamp should be used
+     */
+    public void setCacheStamp(boolean cacheStamp) {
+        this.cacheStamp = cacheStamp;
+        dbValues.clear();
+    }
+
+    /**
+     * Sets for how long the version stamp, if
+     * {@link #setCacheStamp(boolean) enabled}, is trusted before it is read
+     * again.
+     *
+     * @param cacheStampInterval time in milliseconds; zero or less reads the
+     *        stamp for every lookup which would use cached values
+     */
+    public void setCacheStampInterval(long cacheStampInterval) {
+        this.cacheStampInterval = cacheStampInterval;
+    }
+
     /*
      * Developer notes: --------------- This method provides the lookup value
      * needed for finding services within the Spring context and, by convention,
@@ -239,16 +311,25 @@ public class ConfigImpl extends AbstractLevel2Service implements ApplicationCont
 
         Pattern p = Pattern.compile(keyRegex);
         Map<String, String> rv = new HashMap<String, String>();
-        Set<String> keys = prefs.getKeySet();
+        List<String> keys = new ArrayList<String>();
         // Not resolving aliases since these come straight-from the prefs
-        for (String key : keys) {
+        for (String key : prefs.getKeySet()) {
             if (p.matcher(key).find()) {
                 if (prefs.canRead(
                         currentDetails.getCurrentEventContext(), key)) {
-                    rv.put(key, getInternalValue(key));
+                    keys.add(key);
                 }
             }
         }
+        lock.readLock().lock();
+        try {
+            checkStamp(keys);
+            for (String key : keys) {
+                rv.put(key, lookup(key));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
         return rv;
     }
 
@@ -301,16 +382,8 @@ public class ConfigImpl extends AbstractLevel2Service implements ApplicationCont
 
         lock.readLock().lock();
         try {
-            String value = null;
-            if (prefs.checkDatabase(key)) {
-                value = fromDatabase(key);
-            }
-
-            if (value != null) {
-                return value;
-            } else {
-                return prefs.getProperty(key);
-            }
+            checkStamp(Collections.singleton(key));
+            return lookup(key);
         } finally {
             lock.readLock().unlock();
         }
@@ -333,7 +406,8 @@ public class ConfigImpl extends AbstractLevel2Service implements ApplicationCont
 
             // If the value comes from the db, then set it there and return
             if (prefs.checkDatabase(key)) {
-                String current = fromDatabase(key);
+                // Not cached: another server may have changed the value
+                String current = readDatabase(key);
                 if (current != null && current.length() > 0) {
                     int count = sql.updateConfiguration(key, value);
                     if (count != 1) {
@@ -341,6 +415,11 @@ public class ConfigImpl extends AbstractLevel2Service implements ApplicationCont
                                 "Configuration tabled during modification of : "
                                         + key);
                     }
+                    if (cacheStamp) {
+                        sql.updateOrInsertConfigValue(STAMP_KEY,
+                                UUID.randomUUID().toString());
+                    }
+                    invalidateAfterCompletion(key);
                     set = true;
                 }
             }
@@ -371,7 +450,14 @@ public class ConfigImpl extends AbstractLevel2Service implements ApplicationCont
 
         lock.writeLock().lock();
         try {
-            String current = getInternalValue(key);
+            // Not cached: another server may have changed the value
+            String current = null;
+            if (prefs.checkDatabase(key)) {
+                current = readDatabase(key);
+            }
+            if (current == null) {
+                current = prefs.getProperty(key);
+            }
             if (test == null) {
                 if (current != null) {
                     return false;
@@ -417,7 +503,93 @@ public class ConfigImpl extends AbstractLevel2Service implements ApplicationCont
     // Helpers
     // =========================================================================
 
+    /**
+     * Must be called holding the {@link #lock}.
+     */
+    private String lookup(String key) {
+        String value = null;
+        if (prefs.checkDatabase(key)) {
+            value = fromDatabase(key);
+        }
+
+        if (value != null) {
+            return value;
+        } else {
+            return prefs.getProperty(key);
+        }
+    }
+
+    /**
+     * Drops the cached value of the given key once the current transaction
+     * completes, or at once if there is none. Dropping it only under the
+     * {@link #lock} would let a reader cache the old value again before the
+     * new one is committed.
+     */
+    private void invalidateAfterCompletion(final String key) {
+        dbValues.remove(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronizationAdapter() {
+                        @Override
+                        public void afterCompletion(int status) {
+                            dbValues.remove(key);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * If {@link #setCacheStamp(boolean) enabled}, drops all cached values if
+     * the database has been written since they were read. The stamp is only
+     * read if the lookup of the given keys would use a cached value and it
+     * has not been read within the {@link #setCacheStampInterval(long)
+     * interval}.
+     */
+    private void checkStamp(Collection<String> keys) {
+        final long timeout = cacheTimeout;
+        if (!cacheStamp || timeout <= 0) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        if (now - lastStampCheck < cacheStampInterval) {
+            return;
+        }
+        boolean cached = false;
+        for (String key : keys) {
+            final CachedValue value = dbValues.get(key);
+            if (value != null && now - value.read < timeout
+                    && prefs.checkDatabase(key)) {
+                cached = true;
+                break;
+            }
+        }
+        if (!cached) {
+            return;
+        }
+        String stamp = readDatabase(STAMP_KEY);
+        lastStampCheck = now;
+        if (!Objects.equals(stamp, lastStamp)) {
+            dbValues.clear();
+            lastStamp = stamp;
+        }
+    }
+
     private String fromDatabase(String key) {
+        final long timeout = cacheTimeout;
+        if (timeout <= 0) {
+            return readDatabase(key);
+        }
+        final long now = System.currentTimeMillis();
+        final CachedValue cached = dbValues.get(key);
+        if (cached != null && now - cached.read < timeout) {
+            return cached.value;
+        }
+        final String value = readDatabase(key);
+        dbValues.put(key, new CachedValue(value, now));
+        return value;
+    }
+
+    private String readDatabase(String key) {
         String value = null;
         try {
             value = sql.configValue(key);
@@ -427,4 +599,17 @@ public class ConfigImpl extends AbstractLevel2Service implements ApplicationCont
         return value;
     }
 
+    /** A database value, possibly <code>null</code>, and when it was read. */
+    private static class CachedValue {
+
+        final String value;
+
+        final long read;
+
+        CachedValue(String value, long read) {
+            this.value = value;
+            this.read = read;
+        }
+    }
+
 }
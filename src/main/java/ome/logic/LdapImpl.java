@@ -16,12 +16,14 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.naming.AuthenticationException;
 import javax.naming.Context;
 import javax.naming.NamingException;
+import javax.naming.directory.SearchControls;
 import javax.naming.ldap.InitialLdapContext;
 
 import ome.annotations.RolesAllowed;
@@ -43,6 +45,7 @@ import ome.security.auth.GroupContextMapper;
 import ome.security.auth.LdapConfig;
 import ome.security.auth.NewUserGroupBean;
 import ome.security.auth.NewUserGroupOwnerBean;
+import ome.security.auth.OmeroModelContextMapper;
 import ome.security.auth.OrgUnitNewUserGroupBean;
 import ome.security.auth.PersonContextMapper;
 import ome.security.auth.QueryNewUserGroupBean;
@@ -56,14 +59,21 @@ import org.slf4j.Logger;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.ldap.core.ContextMapper;
 import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.DirContextAdapter;
 import org.springframework.ldap.core.DistinguishedName;
 import org.springframework.ldap.core.LdapOperations;
 import org.springframework.ldap.filter.AndFilter;
 import org.springframework.ldap.filter.EqualsFilter;
 import org.springframework.ldap.filter.Filter;
+import org.springframework.ldap.filter.OrFilter;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -98,6 +108,18 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
 
     private OmeroContext appContext;
 
+    /** Number of names looked up by a single search in discovery. */
+    private static final int DISCOVERY_BATCH_SIZE = 100;
+
+    /** Maximum number of directory entries held by the caches. */
+    private static final int CACHE_SIZE = 10000;
+
+    /** DN of each recently synchronized username, if caching is enabled. */
+    private volatile Cache<String, String> dnCache;
+
+    /** Directory state by DN for {@link #synchronizeLdapUser(String)}. */
+    private volatile Cache<String, DirectoryEntry> entryCache;
+
     public LdapImpl(ContextSource ctx, LdapOperations ldap, Roles roles,
             LdapConfig config, RoleProvider roleProvider, SqlAction sql) {
         this.ctx = ctx;
@@ -117,6 +139,28 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
         return ILdap.class;
     }
 
+    /**
+     * Sets for how long the directory entry and group memberships loaded for
+     * a user by {@link #synchronizeLdapUser(String)} are reused by later
+     * synchronizations of the same user. Changes made in the directory may
+     * therefore take this long to reach OMERO.
+     *
+     * @param cacheTimeout time in milliseconds; zero or less disables caching
+     */
+    public void setCacheTimeout(long cacheTimeout) {
+        if (cacheTimeout <= 0) {
+            dnCache = null;
+            entryCache = null;
+        } else {
+            dnCache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE)
+                    .expireAfterWrite(cacheTimeout, TimeUnit.MILLISECONDS)
+                    .<String, String>build();
+            entryCache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE)
+                    .expireAfterWrite(cacheTimeout, TimeUnit.MILLISECONDS)
+                    .<String, DirectoryEntry>build();
+        }
+    }
+
     // ~ System-only interface methods
     // =========================================================================
 
@@ -310,12 +354,21 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
 
         Experimenter omeExp = iQuery.findByString(Experimenter.class,
                 "omeName", username);
-        Experimenter ldapExp = findExperimenter(username);
-        String ldapDN = getPersonContextMapper().getDn(ldapExp);
-        DistinguishedName dn = new DistinguishedName(ldapDN);
-        GroupLoader loader = new GroupLoader(username, dn);
-        List<Long> ldapGroups = loader.getGroups();
-        List<Long> ownedGroups = loader.getOwnedGroups();
+        DirectoryEntry entry = lookupEntry(username);
+        try {
+            synchronizeLdapUser(username, omeExp, entry);
+        } catch (RuntimeException rt) {
+            // e.g. a cached group has since been deleted; reload next time.
+            invalidate(username, entry);
+            throw rt;
+        }
+    }
+
+    private void synchronizeLdapUser(String username, Experimenter omeExp,
+            DirectoryEntry entry) {
+        Experimenter ldapExp = entry.experimenter;
+        List<Long> ldapGroups = entry.groups;
+        List<Long> ownedGroups = entry.ownedGroups;
         List<Object[]> currentGroups = iQuery
                 .projection(
                         "select g.id, g.ldap from ExperimenterGroup g "
@@ -369,6 +422,64 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
         iUpdate.flush();
     }
 
+    /**
+     * Loads the directory entry and group memberships of the given user,
+     * reusing those of a recent call if caching is enabled.
+     */
+    private DirectoryEntry lookupEntry(String username) {
+        final Cache<String, String> dns = dnCache;
+        final Cache<String, DirectoryEntry> entries = entryCache;
+        if (dns != null && entries != null) {
+            final String dn = dns.getIfPresent(username);
+            if (dn != null) {
+                final DirectoryEntry entry = entries.getIfPresent(dn);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+        }
+        final Experimenter ldapExp = findExperimenter(username);
+        final String dn = getPersonContextMapper().getDn(ldapExp);
+        final GroupLoader loader = new GroupLoader(username,
+                new DistinguishedName(dn));
+        final DirectoryEntry entry = new DirectoryEntry(dn, ldapExp,
+                loader.getGroups(), loader.getOwnedGroups());
+        if (dns != null && entries != null) {
+            entries.put(dn, entry);
+            dns.put(username, dn);
+        }
+        return entry;
+    }
+
+    private void invalidate(String username, DirectoryEntry entry) {
+        final Cache<String, String> dns = dnCache;
+        final Cache<String, DirectoryEntry> entries = entryCache;
+        if (dns != null && entries != null) {
+            dns.invalidate(username);
+            entries.invalidate(entry.dn);
+        }
+    }
+
+    /**
+     * What the directory holds for a user, as needed for synchronization.
+     * Instances may be shared between threads so must not be modified.
+     */
+    private static class DirectoryEntry {
+
+        final String dn;
+        final Experimenter experimenter;
+        final List<Long> groups;
+        final List<Long> ownedGroups;
+
+        DirectoryEntry(String dn, Experimenter experimenter,
+                List<Long> groups, List<Long> ownedGroups) {
+            this.dn = dn;
+            this.experimenter = experimenter;
+            this.groups = ImmutableList.copyOf(groups);
+            this.ownedGroups = ImmutableList.copyOf(ownedGroups);
+        }
+    }
+
     /**
      * The IDs in "minus" will be removed from the IDs in "base" and then
      * the operation chosen by "add" will be run on them. This method
@@ -720,13 +831,33 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
                         .addIds(Lists.newArrayList(r.getRootId(), r.getGuestId()))
                         .addBoolean("ldap", false));
 
+        final List<String> names = new ArrayList<String>(localExperimenters.size());
         for (Experimenter e : localExperimenters) {
-            try {
-                findExperimenter(e.getOmeName());
-            } catch (ApiUsageException aue) {
+            names.add(e.getOmeName());
+        }
+        final PersonContextMapper mapper = getPersonContextMapper();
+        final Map<String, String> found = searchNames(names,
+                config.getUserFilter(), config.getUserAttribute("omeName"),
+                mapper.getControls(), mapper);
+        final boolean ignoreCase = provider.isIgnoreCaseLookup();
+        for (Experimenter e : localExperimenters) {
+            final String name = e.getOmeName();
+            if (!found.containsKey(name)) {
                 // This user doesn't have an LDAP account
                 continue;
             }
+            final String match = found.get(name);
+            if (match == null) {
+                // Ambiguous in the batch, so search for the name alone
+                try {
+                    findExperimenter(name);
+                } catch (ApiUsageException aue) {
+                    continue;
+                }
+            } else if (ignoreCase ? !match.equalsIgnoreCase(name) : !match.equals(name)) {
+                // As findExperimenter: the match must be exact
+                continue;
+            }
             discoveredExperimenters.add(e);
         }
         return discoveredExperimenters;
@@ -745,18 +876,129 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
                                 r.getSystemGroupId(), r.getUserGroupId()))
                         .addBoolean("ldap", false));
 
+        final List<String> names = new ArrayList<String>(localGroups.size());
         for (ExperimenterGroup g : localGroups) {
-            try {
-                findGroup(g.getName());
-            } catch (ApiUsageException aue) {
+            names.add(g.getName());
+        }
+        final GroupContextMapper mapper = getGroupContextMapper();
+        final Map<String, String> found = searchNames(names,
+                config.getGroupFilter(), config.getGroupAttribute("name"),
+                mapper.getControls(), mapper);
+        for (ExperimenterGroup g : localGroups) {
+            final String name = g.getName();
+            if (!found.containsKey(name)) {
                 // This group doesn't exist in the LDAP server
                 continue;
             }
+            final String match = found.get(name);
+            if (match == null) {
+                // Ambiguous in the batch, so search for the name alone
+                try {
+                    findGroup(name);
+                } catch (ApiUsageException aue) {
+                    continue;
+                }
+            } else if (!match.equals(name)) {
+                // As findGroup: the match must be exact
+                continue;
+            }
             discoveredGroups.add(g);
         }
         return discoveredGroups;
     }
 
+    /**
+     * Looks up many user or group names with one search per batch rather
+     * than one search per name. A name which exactly one returned entry
+     * holds in the name attribute is resolved to the name that entry maps
+     * to. Where the batch cannot tell whether the search for the name alone
+     * would have found exactly one entry, because several entries hold the
+     * name or an entry holds none of the names as the server may compare
+     * them differently, the name is mapped to {@code null} so that the
+     * caller searches for it alone as before.
+     *
+     * @param names the names to look up
+     * @param typeFilter the filter selecting users or groups
+     * @param attribute the attribute holding the name
+     * @param controls the attributes to be returned
+     * @param mapper maps each entry to an {@link Experimenter} or
+     *        {@link ExperimenterGroup}
+     * @return the names which may be in the directory, as described above;
+     *         names which are not in the directory are absent
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, String> searchNames(List<String> names,
+            Filter typeFilter, final String attribute, SearchControls controls,
+            final OmeroModelContextMapper mapper) {
+        final Map<String, String> found = Maps.newHashMap();
+        for (List<String> batch : Iterables.partition(names,
+                DISCOVERY_BATCH_SIZE)) {
+            final OrFilter any = new OrFilter();
+            final Set<String> keys = new HashSet<String>();
+            for (String name : batch) {
+                any.or(new EqualsFilter(attribute, name));
+                keys.add(name.toLowerCase());
+            }
+            final AndFilter filter = new AndFilter();
+            filter.and(typeFilter);
+            filter.and(any);
+            final List<Object[]> entries = ldap.search("", filter.encode(),
+                    controls, new ContextMapper() {
+                        public Object mapFromContext(Object ctx) {
+                            final String[] values = ((DirContextAdapter) ctx)
+                                    .getStringAttributes(attribute);
+                            return new Object[] {
+                                    mapper.mapFromContext(ctx), values };
+                        }
+                    });
+            final Map<String, Integer> counts = Maps.newHashMap();
+            final Map<String, String> matches = Maps.newHashMap();
+            boolean unattributed = false;
+            for (Object[] entry : entries) {
+                final Set<String> held = new HashSet<String>();
+                if (entry[1] != null) {
+                    for (String value : (String[]) entry[1]) {
+                        final String key = value.toLowerCase();
+                        if (keys.contains(key)) {
+                            held.add(key);
+                        }
+                    }
+                }
+                if (held.isEmpty()) {
+                    unattributed = true;
+                }
+                for (String key : held) {
+                    final Integer count = counts.get(key);
+                    counts.put(key, count == null ? 1 : count + 1);
+                    matches.put(key, mappedName(entry[0]));
+                }
+            }
+            for (String name : batch) {
+                final String key = name.toLowerCase();
+                final Integer count = counts.get(key);
+                if (count == null) {
+                    if (unattributed) {
+                        found.put(name, null);
+                    }
+                } else if (count == 1) {
+                    found.put(name, matches.get(key));
+                } else {
+                    found.put(name, null);
+                }
+            }
+        }
+        return found;
+    }
+
+    private static String mappedName(Object entry) {
+        if (entry instanceof Experimenter) {
+            return ((Experimenter) entry).getOmeName();
+        } else if (entry instanceof ExperimenterGroup) {
+            return ((ExperimenterGroup) entry).getName();
+        }
+        return null;
+    }
+
     // Helpers
     // =========================================================================
 
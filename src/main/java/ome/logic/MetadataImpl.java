@@ -8,6 +8,7 @@
 package ome.logic;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -20,6 +21,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
 
@@ -77,9 +79,12 @@ public class MetadataImpl
 	implements IMetadata
 {
 
-	/** Query to load the original file related to a file annotation. */
-	private final String LOAD_ORIGINAL_FILE = 
-		"select p from OriginalFile as p left outer join fetch p.hasher where p.id = :id";
+	/** Query to load the original files related to file annotations. */
+	private final String LOAD_ORIGINAL_FILES = 
+		"select p from OriginalFile as p left outer join fetch p.hasher where p.id in (:ids)";
+
+	/** Maximum number of identifiers to bind in one batched query. */
+	private static final int BATCH_SIZE = 1000;
 
     /* HQL to translate given image IDs into corresponding fileset IDs */
     private static final String LOAD_FILESET_OF_IMAGE =
@@ -105,7 +110,7 @@ public class MetadataImpl
      * light source.
      * 
      * @param src The light source to handle.
-     * @param instrument Pass <code>true</code> for clause on id,
+     * @param instrument Pass <code>true</code> for clause on ids,
      * 					<code>false</code> for clause on instrument
      * @return See above.
      */
@@ -120,24 +125,122 @@ public class MetadataImpl
 			sb.append("left outer join fetch l.pulse as pulse ");
 			//sb.append("left outer join fetch l.pump as pump ");
 			if (idClause)
-				sb.append("where l.id = :id");
+				sb.append("where l.id in (:ids)");
 			else sb.append("where l.instrument.id = :instrumentId");
 		} else if (src instanceof Filament) {
 			sb.append("select l from Filament as l ");
 			sb.append("left outer join fetch l.type ");
 			if (idClause)
-				sb.append("where l.id = :id");
+				sb.append("where l.id in (:ids)");
 			else sb.append("where l.instrument.id = :instrumentId");
 		} else if (src instanceof Arc) {
 			sb.append("select l from Arc as l ");
 			sb.append("left outer join fetch l.type ");
 			if (idClause)
-				sb.append("where l.id = :id");
+				sb.append("where l.id in (:ids)");
 			else sb.append("where l.instrument.id = :instrumentId");
 		} else sb = null;
     	return sb;
     }
     
+    /**
+     * Loads the passed light sources, issuing one query for each kind
+     * of light source rather than one for each light source.
+     * Light emitting diodes and light sources of other kinds are skipped.
+     * 
+     * @param sources The light sources to load.
+     * @return The loaded light sources by identifier.
+     */
+    private Map<Long, LightSource> loadLightSources(
+    		Collection<LightSource> sources)
+    {
+    	SetMultimap<String, Long> idsByQuery = HashMultimap.create();
+    	for (LightSource src : sources) {
+    		if (src instanceof LightEmittingDiode) continue;
+    		StringBuilder sb = createLightQuery(src, true);
+    		if (sb != null) idsByQuery.put(sb.toString(), src.getId());
+    	}
+    	Map<Long, LightSource> loaded = new HashMap<Long, LightSource>();
+    	for (Map.Entry<String, Collection<Long>> e :
+    		idsByQuery.asMap().entrySet()) {
+    		for (List<Long> batch : Iterables.partition(e.getValue(),
+    				BATCH_SIZE)) {
+    			List<LightSource> list = iQuery.findAllByQuery(e.getKey(),
+    					new Parameters().addIds(batch));
+    			for (LightSource src : list) {
+    				loaded.put(src.getId(), src);
+    			}
+    		}
+    	}
+    	return loaded;
+    }
+
+    /**
+     * Loads the emission and excitation filters of the passed filter sets
+     * or light paths, with one query for each kind of link so that the
+     * rows for one do not multiply those for the other. The objects are
+     * already in the Hibernate session so each query fills in the
+     * collections of the instances that the caller holds.
+     * 
+     * @param type The class that has the filter links,
+     * 			   <code>FilterSet</code> or <code>LightPath</code>.
+     * @param ids The identifiers of the objects.
+     */
+    private void loadFilterLinks(String type, Set<Long> ids)
+    {
+    	if (ids.isEmpty()) return;
+    	for (String link : new String[] {"emissionFilterLink",
+    			"excitationFilterLink"}) {
+    		StringBuilder sb = new StringBuilder();
+    		sb.append("select distinct p from " + type + " as p ");
+    		sb.append("left outer join fetch p." + link + " as fl ");
+    		sb.append("left outer join fetch fl.child as f ");
+    		sb.append("left outer join fetch f.transmittanceRange ");
+    		sb.append("left outer join fetch f.type ");
+    		sb.append("where p.id in (:ids)");
+    		for (List<Long> batch : Iterables.partition(ids, BATCH_SIZE)) {
+    			iQuery.findAllByQuery(sb.toString(),
+    					new Parameters().addIds(batch));
+    		}
+    	}
+    }
+
+    /**
+     * Replaces the original files of the passed file annotations with
+     * the loaded files, issuing one query for all of them rather than
+     * one for each annotation.
+     * 
+     * @param annotations The annotations, any that are not file annotations
+     * 					  or have no file are skipped.
+     */
+    private void loadOriginalFiles(Collection<?> annotations)
+    {
+    	Set<Long> ids = new HashSet<Long>();
+    	for (Object object : annotations) {
+    		if (object instanceof FileAnnotation) {
+    			OriginalFile of = ((FileAnnotation) object).getFile();
+    			if (of != null) ids.add(of.getId());
+    		}
+    	}
+    	if (ids.isEmpty()) return;
+    	Map<Long, OriginalFile> files = new HashMap<Long, OriginalFile>();
+    	for (List<Long> batch : Iterables.partition(ids, BATCH_SIZE)) {
+    		List<OriginalFile> list = iQuery.findAllByQuery(
+    				LOAD_ORIGINAL_FILES, new Parameters().addIds(batch));
+    		for (OriginalFile of : list) {
+    			files.put(of.getId(), of);
+    		}
+    	}
+    	for (Object object : annotations) {
+    		if (object instanceof FileAnnotation) {
+    			FileAnnotation fa = (FileAnnotation) object;
+    			if (fa.getFile() != null) {
+    				fa.setFile(files.get(fa.getFile().getId()));
+    			}
+    		}
+    	}
+    }
+
     /**
 	 * Retrieves the annotation of the given type.
 	 * 
@@ -495,33 +598,9 @@ public class MetadataImpl
         sb.append("left outer join fetch channel.filterSet as filter ");
         sb.append("left outer join fetch filter.dichroic as dichroic ");
         
-        //emission filters
-        sb.append("left outer join fetch filter.emissionFilterLink as efl ");
-        sb.append("left outer join fetch efl.child as ef ");
-        sb.append("left outer join fetch ef.transmittanceRange as efTrans ");
-        sb.append("left outer join fetch ef.type as type1 ");
-        
-        //excitation filters
-        sb.append("left outer join fetch filter.excitationFilterLink as exfl ");
-        sb.append("left outer join fetch exfl.child as exf ");
-        sb.append("left outer join fetch exf.transmittanceRange as exfTrans ");
-        sb.append("left outer join fetch exf.type as type2 ");
-        
         sb.append("left outer join fetch channel.lightPath as lp ");
-        sb.append("left outer join fetch lp.dichroic as dichroic ");
+        sb.append("left outer join fetch lp.dichroic as lpdichroic ");
         
-        //emission filters
-        sb.append("left outer join fetch lp.emissionFilterLink as efLpl ");
-        sb.append("left outer join fetch efLpl.child as efLp ");
-        sb.append("left outer join fetch efLp.transmittanceRange as efLpTrans ");
-        sb.append("left outer join fetch efLp.type as type3 ");
-        
-        //excitation filters
-        sb.append("left outer join fetch lp.excitationFilterLink as exfLpl ");
-        sb.append("left outer join fetch exfLpl.child as exfLp ");
-        sb.append("left outer join fetch exfLp.transmittanceRange as exfLpTrans ");
-        sb.append("left outer join fetch exfLp.type as type4 ");
-
         sb.append("left outer join fetch ds.detector as detector ");
         sb.append("left outer join fetch detector.type ");
         sb.append("left outer join fetch ds.binning as binning ");
@@ -530,42 +609,48 @@ public class MetadataImpl
         sb.append("where channel.id in (:ids)");
         List<LogicalChannel> list = iQuery.findAllByQuery(sb.toString(), 
         		new Parameters().addIds(ids));
-        Iterator<LogicalChannel> i = list.iterator();
-        LogicalChannel channel;
+        //filter links are one-to-many so are loaded separately to
+        //avoid a cartesian product across the channels' filters
+        Set<Long> filterSetIds = new HashSet<Long>();
+        Set<Long> lightPathIds = new HashSet<Long>();
+        for (LogicalChannel channel : list) {
+        	if (channel.getFilterSet() != null)
+        		filterSetIds.add(channel.getFilterSet().getId());
+        	if (channel.getLightPath() != null)
+        		lightPathIds.add(channel.getLightPath().getId());
+        }
+        loadFilterLinks("FilterSet", filterSetIds);
+        loadFilterLinks("LightPath", lightPathIds);
+        //light sources then their pumps, one query for each kind
+        List<LightSettings> settings = new ArrayList<LightSettings>();
+        List<LightSource> sources = new ArrayList<LightSource>();
         LightSettings light;
-        LightSource src, pump;
-        Parameters params;
-        Laser laser;
-        while (i.hasNext()) {
-        	channel = i.next();
+        for (LogicalChannel channel : list) {
 			light = channel.getLightSourceSettings();
-			if (light != null) {
-				src = light.getLightSource();
-				if (!(src instanceof LightEmittingDiode)) {
-					sb = createLightQuery(src, true);
-					if (sb != null) {
-						params = new Parameters(); 
-						params.addId(src.getId());
-						src = iQuery.findByQuery(sb.toString(), params);
-						if (src instanceof Laser) {
-							laser = (Laser) src;
-							pump = laser.getPump();
-							if (pump != null && 
-									!(pump instanceof LightEmittingDiode)) {
-								params = new Parameters(); 
-								params.addId(pump.getId());
-								sb = createLightQuery(pump, true);
-								if (sb != null)
-									laser.setPump((LightSource)
-											iQuery.findByQuery(sb.toString(), 
-													params));
-								light.setLightSource(laser);
-							}
-						} else light.setLightSource(src);
-					}
-				}
+			if (light != null && light.getLightSource() != null) {
+				settings.add(light);
+				sources.add(light.getLightSource());
 			}
 		}
+        Map<Long, LightSource> loaded = loadLightSources(sources);
+        List<LightSource> pumps = new ArrayList<LightSource>();
+        for (LightSource src : loaded.values()) {
+        	if (src instanceof Laser && ((Laser) src).getPump() != null)
+        		pumps.add(((Laser) src).getPump());
+        }
+        Map<Long, LightSource> loadedPumps = loadLightSources(pumps);
+        LightSource src, pump;
+        for (LightSource loadedSrc : loaded.values()) {
+        	if (loadedSrc instanceof Laser) {
+        		pump = ((Laser) loadedSrc).getPump();
+        		if (pump != null && loadedPumps.containsKey(pump.getId()))
+        			((Laser) loadedSrc).setPump(loadedPumps.get(pump.getId()));
+        	}
+        }
+        for (LightSettings ls : settings) {
+        	src = loaded.get(ls.getLightSource().getId());
+        	if (src != null) ls.setLightSource(src);
+        }
     	return new HashSet<LogicalChannel>(list);
     }
 
@@ -606,9 +691,6 @@ public class MetadataImpl
          List<A> supported;
          Iterator<A> j;
          A object;
-         Iterator<A> ann;
-         OriginalFile of;
-         FileAnnotation fa;
          while (i.hasNext()) {
              annotated = i.next();
              id = annotated.getId();
@@ -634,22 +716,15 @@ public class MetadataImpl
             		 supported.addAll(list);
             	 }
              } else supported.addAll(list);
-             ann = supported.iterator();
-             while (ann.hasNext()) {
-            	 object = ann.next();
-            	 //load original file.
-            	 if (object instanceof FileAnnotation) {
-            		 fa = (FileAnnotation) object;
-            		 if (fa.getFile() != null) {
-            			 of = iQuery.findByQuery(LOAD_ORIGINAL_FILE, 
-                				 new Parameters().addId(fa.getFile().getId()));
-				 fa.setFile(of);
-            		 }
-            	 }
-             }
              //Archived if no updated script.
             set.addAll(supported);
          }
+         //load original files.
+         List<A> all = new ArrayList<A>();
+         for (Set<A> annotations : map.values()) {
+             all.addAll(annotations);
+         }
+         loadOriginalFiles(all);
          return map;
     }
 
@@ -665,17 +740,13 @@ public class MetadataImpl
     	if (FILE_TYPE.equals(type.getName()) && list != null) {
     		i = list.iterator();
     		FileAnnotation fa;
-    		OriginalFile of;
     		List<Annotation> toRemove = new ArrayList<Annotation>();
     		while (i.hasNext()) {
     			fa = (FileAnnotation) i.next();
-    			if (fa.getFile() != null) {
-    				of = iQuery.findByQuery(LOAD_ORIGINAL_FILE, 
-    	       				 new Parameters().addId(fa.getFile().getId()));
-    	       		 fa.setFile(of);
-    			} else toRemove.add(fa);
+    			if (fa.getFile() == null) toRemove.add(fa);
 			}
     		if (toRemove.size() > 0) list.removeAll(toRemove);
+    		loadOriginalFiles(list);
     	}
     	if (list == null) return new HashSet<A>();
     	Set<A> set = new HashSet<A>(list.size());
@@ -713,21 +784,7 @@ public class MetadataImpl
     	List<A> list = iQuery.findAllByQuery(sb.toString(), 
     			new Parameters().addIds(annotationIds));
     	if (list == null) return new HashSet<A>();
-    	Iterator<A> i = list.iterator();
-    	A object;
-    	FileAnnotation fa;
-    	Object of;
-    	while (i.hasNext()) {
-			object =  i.next();
-			if (object instanceof FileAnnotation) {
-				fa = (FileAnnotation) object;
-				if (fa.getFile() != null) {
-					of = iQuery.findByQuery(LOAD_ORIGINAL_FILE, 
-							new Parameters().addId(fa.getFile().getId()));
-					fa.setFile((OriginalFile) of);
-				}
-			}
-		}
+    	loadOriginalFiles(list);
     	return new HashSet<A>(list);
     }
 
@@ -987,8 +1044,7 @@ public class MetadataImpl
     	Set<A> set;
     	Long parentID;
     	A ann;
-    	FileAnnotation fa;
-		OriginalFile of;
+    	List<A> all = new ArrayList<A>(list.size());
     	while (i.hasNext()) {
 			object = (ILink) i.next();
 			parentID = object.getParent().getId();
@@ -998,16 +1054,10 @@ public class MetadataImpl
 				map.put(parentID, set);
 			}
 			ann = (A) object.getChild();
-			if (FILE_TYPE.equals(type.getName())) {
-				fa = (FileAnnotation) ann;
-				if (fa.getFile() != null) {
-					of = iQuery.findByQuery(LOAD_ORIGINAL_FILE, 
-							new Parameters().addId(fa.getFile().getId()));
-					fa.setFile(of);
-				}
-			}
+			all.add(ann);
 			set.add(ann);
 		}
+    	if (FILE_TYPE.equals(type.getName())) loadOriginalFiles(all);
     	return map;
     }
 
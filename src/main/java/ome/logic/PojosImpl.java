@@ -60,6 +60,7 @@ import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 
 /**
@@ -83,6 +84,12 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
     // ~ READ
     // =========================================================================
 
+    /**
+     * Maximum number of objects or ids bound into a single
+     * <code>in (...)</code> clause.
+     */
+    final static int BATCH_SIZE = 1000;
+
     /** Query to load the number of annotations per image. */
     final static String loadCountsImages = "select img from Image img "
             + "left outer join fetch img.annotationLinksCountPerOwner iac "
@@ -94,6 +101,18 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
             + "left outer join fetch d.imageLinksCountPerOwner where d " 
             + "in (:list)";
     
+    /**
+     * Query for which of the given datasets are in a project. Only ids are
+     * loaded, since a fetched collection of links would be filled by the
+     * first batch to load it and miss the links found by later batches.
+     */
+    final static String linkedDatasets = "select distinct pdl.child.id "
+            + "from ProjectDatasetLink pdl where pdl.child.id in (:ids)";
+
+    /** Query for which of the given plates are in a screen. */
+    final static String linkedPlates = "select distinct spl.child.id "
+            + "from ScreenPlateLink spl where spl.child.id in (:ids)";
+
     /** Query to load the number of annotations per plate. */
     final static String loadCountsPlates = "select p from Plate p "
             + "left outer join fetch p.annotationLinksCountPerOwner " 
@@ -162,10 +181,8 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
                             + rootNodeType);
         }
 
-        Query<List<IObject>> q = getQueryFactory().lookup(
-                PojosLoadHierarchyQueryDefinition.class.getName(),
-                options.addClass(rootNodeType).addIds(rootNodeIds));
-        List<IObject> l = iQuery.execute(q);
+        Query<List<IObject>> q;
+        List<IObject> l = loadHierarchy(rootNodeType, rootNodeIds, options);
 
         Dataset d;
         Plate plate;
@@ -200,43 +217,21 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
                             notLinked.put(id, d);// not linked to user's project
                         }
                     }
-                    StringBuffer sb = new StringBuffer();
-                    sb.append("select this from Project this ");
-                    sb.append("left outer join fetch this.datasetLinks pdl ");
-                    sb.append("left outer join fetch pdl.child ds ");
-                    sb.append("where ds in (:list)");
                     if (notLinked.size() > 0) {
-                        List<Dataset> nl = new ArrayList<Dataset>();
-                        nl.addAll(notLinked.values());
-                        List<IObject> projects =
-                                iQuery.findAllByQuery(sb.toString(),
-                                new Parameters().addList("list", nl));
-                        if (projects.isEmpty()) {
+                        // some datasets are in other projects
+                        notLinked.keySet().removeAll(findIdsInBatches(
+                                linkedDatasets, notLinked.keySet()));
+                        if (notLinked.size() > 0) {
+                            List<Dataset> nl = new ArrayList<Dataset>();
+                            nl.addAll(notLinked.values());
                             datasets.addAll(nl);
                             l.addAll(nl);
-                        } else { //some datasets are in the projects
-                            for (IObject o : projects) {
-                                p = (Project) o;
-                                List<Dataset> ll = p.linkedDatasetList();
-                                for (Dataset data : ll) {
-                                    if (notLinked.containsKey(data.getId())) {
-                                        notLinked.remove(data.getId());
-                                    }
-                                }
-                            }
-                            if (notLinked.size() > 0) {
-                                nl = new ArrayList<Dataset>();
-                                nl.addAll(notLinked.values());
-                                datasets.addAll(nl);
-                                l.addAll(nl); 
-                            }
                         }
                     }
                 }
             }
             if (datasets.size() > 0) {
-                iQuery.findAllByQuery(loadCountsDatasets, new Parameters()
-                        .addSet("list", datasets));
+                findAllInBatches(loadCountsDatasets, datasets);
             }
         } else if (Dataset.class.isAssignableFrom(rootNodeType)) {
             Set<Image> images = new HashSet<Image>();
@@ -245,8 +240,7 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
                 images.addAll(d.linkedImageList());
             }
             if (images.size() > 0) {
-                iQuery.findAllByQuery(loadCountsImages, new Parameters()
-                        .addSet("list", images));
+                findAllInBatches(loadCountsImages, images);
             }
             // WORKAROUND ticket:907
             // Destructive changes in this block
@@ -287,48 +281,91 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
                             notLinked.put(id, pp);// not linked to user's screen
                         }
                     }
-                    StringBuffer sb = new StringBuffer();
-                    sb.append("select this from Screen this ");
-                    sb.append("left outer join fetch this.plateLinks pdl ");
-                    sb.append("left outer join fetch pdl.child ds ");
-                    sb.append("where ds in (:list)");
                     if (notLinked.size() > 0) {
-                        List<Plate> nl = new ArrayList<Plate>();
-                        nl.addAll(notLinked.values());
-                        List<IObject> screens =
-                                iQuery.findAllByQuery(sb.toString(),
-                                new Parameters().addList("list", nl));
-                        if (screens.isEmpty()) {
+                        // some plates are in other screens
+                        notLinked.keySet().removeAll(findIdsInBatches(
+                                linkedPlates, notLinked.keySet()));
+                        if (notLinked.size() > 0) {
+                            List<Plate> nl = new ArrayList<Plate>();
+                            nl.addAll(notLinked.values());
                             plates.addAll(nl);
                             l.addAll(nl);
-                        } else { //some datasets are in the projects
-                            for (IObject o : screens) {
-                                p = (Screen) o;
-                                List<Plate> ll = p.linkedPlateList();
-                                for (Plate data : ll) {
-                                    if (notLinked.containsKey(data.getId())) {
-                                        notLinked.remove(data.getId());
-                                    }
-                                }
-                            }
-                            if (notLinked.size() > 0) {
-                                nl = new ArrayList<Plate>();
-                                nl.addAll(notLinked.values());
-                                plates.addAll(nl);
-                                l.addAll(nl); 
-                            }
                         }
                     }
                 }
             }
             if (plates.size() > 0) {
-                iQuery.findAllByQuery(loadCountsPlates, new Parameters()
-                        .addSet("list", plates));
+                findAllInBatches(loadCountsPlates, plates);
             }
         } 
         return new HashSet<IObject>(l);
     }
 
+    /**
+     * Loads the containers of the given type, walking large sets of root
+     * ids in batches of {@link #BATCH_SIZE}. Containers fetched by more than
+     * one batch are the same session instance, so the caller's final set
+     * contains each only once. Paged calls are not batched, since the offset
+     * and limit would otherwise be applied to each batch separately.
+     */
+    @SuppressWarnings("unchecked")
+    private List<IObject> loadHierarchy(Class rootNodeType, Set rootNodeIds,
+            Parameters options) {
+        if (rootNodeIds == null || rootNodeIds.size() <= BATCH_SIZE
+                || options.isPagination()) {
+            Query<List<IObject>> q = getQueryFactory().lookup(
+                    PojosLoadHierarchyQueryDefinition.class.getName(),
+                    options.addClass(rootNodeType).addIds(rootNodeIds));
+            return iQuery.execute(q);
+        }
+        final List<IObject> l = new ArrayList<IObject>();
+        for (List<Long> batch : Iterables.partition((Set<Long>) rootNodeIds,
+                BATCH_SIZE)) {
+            Query<List<IObject>> q = getQueryFactory().lookup(
+                    PojosLoadHierarchyQueryDefinition.class.getName(),
+                    options.addClass(rootNodeType).addIds(batch));
+            l.addAll(iQuery.execute(q));
+        }
+        return l;
+    }
+
+    /**
+     * Runs the id projection <code>query</code> with its <code>:ids</code>
+     * parameter bound to successive batches of at most {@link #BATCH_SIZE}
+     * of the given ids.
+     *
+     * @return the ids returned by any of the batches
+     */
+    private Set<Long> findIdsInBatches(String query, Collection<Long> ids) {
+        final Set<Long> results = new HashSet<Long>();
+        for (List<Long> batch : Iterables.partition(ids, BATCH_SIZE)) {
+            for (Object[] row : iQuery.projection(query,
+                    new Parameters().addIds(batch))) {
+                results.add((Long) row[0]);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs <code>query</code> with its <code>:list</code> parameter bound to
+     * successive batches of at most {@link #BATCH_SIZE} of the given objects
+     * rather than to all of them at once. The count queries are only run
+     * to fill in the count maps of objects already in the session, so their
+     * results may be ignored.
+     */
+    private List<IObject> findAllInBatches(String query,
+            Collection<? extends IObject> objects) {
+        final List<IObject> results = new ArrayList<IObject>();
+        for (List<? extends IObject> batch : Iterables.partition(objects,
+                BATCH_SIZE)) {
+            List<IObject> found = iQuery.findAllByQuery(query,
+                    new Parameters().addList("list", batch));
+            results.addAll(found);
+        }
+        return results;
+    }
+
     @Override
     @RolesAllowed("user")
     @Transactional(readOnly = true)
@@ -587,6 +624,7 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
     @Override
     @RolesAllowed("user")
     @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
     public Map getCollectionCount(String type, String property, Set ids,
             Parameters options) {
 
@@ -597,16 +635,16 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
 
         Map<Long, Integer> results = new HashMap<Long, Integer>();
 
-        String query = "select size(table." + parsedProperty + ") from " + type
-                + " table where table.id = :id";
-        // FIXME: optimize by doing new list(id,size(table.property)) ... group
-        // by id
-        for (Iterator iter = ids.iterator(); iter.hasNext();) {
-            Long id = (Long) iter.next();
-            Query<List<Integer>> q = getQueryFactory().lookup(query,
-                    new Parameters().addId(id));
-            Integer count = iQuery.execute(q).get(0);
-            results.put(id, count);
+        // size() is rendered as a correlated count per row, so one query
+        // returns the counts for a whole batch of ids.
+        String query = "select table.id, size(table." + parsedProperty
+                + ") from " + type + " table where table.id in (:ids)";
+        for (List<Long> batch : Iterables.partition((Set<Long>) ids,
+                BATCH_SIZE)) {
+            for (Object[] row : iQuery.projection(query,
+                    new Parameters().addIds(batch))) {
+                results.put((Long) row[0], ((Number) row[1]).intValue());
+            }
         }
 
         return results;
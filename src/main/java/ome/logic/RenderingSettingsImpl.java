@@ -84,6 +84,12 @@ public class RenderingSettingsImpl extends AbstractLevel2Service implements
     
     /** The value used to compare double and float. */
 	public final static double EPSILON = 0.00001;
+
+    /**
+     * Number of rendering settings saved per call to {@link ome.api.IUpdate} by the
+     * methods which operate on whole containers.
+     */
+    private final static int SAVE_BATCH_SIZE = 100;
 	
     /** The logger for this class. */
     private transient static Logger log = 
@@ -501,6 +507,20 @@ public class RenderingSettingsImpl extends AbstractLevel2Service implements
                                        boolean save, boolean computeStats,
                                        List<Family> families, 
                                        List<RenderingModel> renderingModels)
+    {
+        return resetDefaults(settings, pixels, save, computeStats,
+                new QuantumFactory(families), renderingModels);
+    }
+
+    /**
+     * As {@link #resetDefaults(RenderingDef, Pixels, boolean, boolean, List, List)}
+     * but with a quantum factory which can be shared across a whole set of
+     * pixels.
+     */
+    private RenderingDef resetDefaults(RenderingDef settings, Pixels pixels,
+                                       boolean save, boolean computeStats,
+                                       QuantumFactory quantumFactory,
+                                       List<RenderingModel> renderingModels)
     {
     	// Handle the case where we have no rendering settings so that we can
     	// reset "pretty good image" or "original" (channel minimum and
@@ -510,7 +530,6 @@ public class RenderingSettingsImpl extends AbstractLevel2Service implements
         	settings = createNewRenderingDef(pixels);
         }
         
-        QuantumFactory quantumFactory = new QuantumFactory(families);
         try
         {
         	PixelBuffer buffer = null;
@@ -634,9 +653,11 @@ public class RenderingSettingsImpl extends AbstractLevel2Service implements
         List<RenderingModel> renderingModels = 
             pixelsMetadata.getAllEnumerations(RenderingModel.class);
         
-    	List<RenderingDef> toSave = new ArrayList<RenderingDef>(pixels.size());
+        QuantumFactory quantumFactory = new QuantumFactory(families);
+    	List<RenderingDef> toSave = new ArrayList<RenderingDef>(SAVE_BATCH_SIZE);
     	Map<Long, RenderingDef> settingsMap = loadRenderingSettings(pixels);
     	RenderingDef settings;
+    	int done = 0;
     	for (Pixels p : pixels)
     	{
     		settings = settingsMap.get(p.getId());
@@ -647,7 +668,7 @@ public class RenderingSettingsImpl extends AbstractLevel2Service implements
     		try {
     			RenderingDef newSettings =
     				resetDefaults(settings, p, false, computeStats,
-    						families, renderingModels);
+    						quantumFactory, renderingModels);
     			if (newSettings != null) {
     				toSave.add(newSettings);
     			}
@@ -662,18 +683,41 @@ public class RenderingSettingsImpl extends AbstractLevel2Service implements
                 log.warn("Exception while resetting settings for Image:"
                          + p.getImage().getId(), e);
             }
+    		done++;
+    		if (toSave.size() >= SAVE_BATCH_SIZE) {
+    			saveBatch("resetDefaultsInSet", toSave, done, pixels.size());
+    		}
     	}
-        StopWatch s2 = new Slf4JStopWatch(
-			"omero.resetDefaultsInSet.saveAndReturn");
-        if (toSave.size() > 0) {
-        	RenderingDef[] toSaveArray = 
-        		toSave.toArray(new RenderingDef[toSave.size()]);
-        	iUpdate.saveAndReturnArray(toSaveArray);
-        }
-        s2.stop();
+        saveBatch("resetDefaultsInSet", toSave, done, pixels.size());
         s1.stop();
     	return imageIds;
     }
+
+    /**
+     * Saves and then clears the given rendering settings, logging how far
+     * through the whole set the calling operation is. Saving in batches
+     * keeps each merge small for containers with thousands of images.
+     *
+     * @param operation The name of the calling method, for logging.
+     * @param toSave The settings to save. Cleared on return.
+     * @param done The number of pixels sets processed so far.
+     * @param total The total number of pixels sets to process.
+     */
+    private void saveBatch(String operation, List<RenderingDef> toSave,
+            int done, int total)
+    {
+        if (toSave.isEmpty()) {
+            return;
+        }
+        StopWatch s1 = new Slf4JStopWatch("omero." + operation + ".save");
+        iUpdate.saveArray(toSave.toArray(new RenderingDef[toSave.size()]));
+        s1.stop();
+        toSave.clear();
+        if (total > SAVE_BATCH_SIZE) {
+            log.info(String.format("%s: processed %d of %d pixels sets",
+                    operation, done, total));
+        }
+    }
     
     /**
      * Returns the cut in value if available.
@@ -1247,7 +1291,8 @@ public class RenderingSettingsImpl extends AbstractLevel2Service implements
         	return toReturn;
     	}
     	
-    	List<RenderingDef> toSave = new ArrayList<RenderingDef>();
+    	List<RenderingDef> toSave =
+    	        new ArrayList<RenderingDef>(SAVE_BATCH_SIZE);
     	
     	Map<Long, RenderingDef> settingsMap = loadRenderingSettings(pixels);
     	RenderingDef settingsFrom = settingsMap.get(from);
@@ -1278,6 +1323,7 @@ public class RenderingSettingsImpl extends AbstractLevel2Service implements
     		
 
     	RenderingDef settingsTo;
+    	int done = 0;
     	for (Pixels p : pixels)
     	{
     		settingsTo = settingsMap.get(p.getId());
@@ -1291,13 +1337,12 @@ public class RenderingSettingsImpl extends AbstractLevel2Service implements
             	toSave.add(settingsTo);
             	toReturnTrue.add(p.getImage().getId());
             }
+            done++;
+            if (toSave.size() >= SAVE_BATCH_SIZE) {
+                saveBatch("applySettingsToSet", toSave, done, pixels.size());
+            }
     	}
-        StopWatch s2 = new Slf4JStopWatch(
-			"omero.applySettingsToSet.saveAndReturn");
-        RenderingDef[] toSaveArray = 
-        	toSave.toArray(new RenderingDef[toSave.size()]);
-        iUpdate.saveAndReturnArray(toSaveArray);
-        s2.stop();
+        saveBatch("applySettingsToSet", toSave, done, pixels.size());
         s1.stop();
         
     	toReturn.put(Boolean.valueOf(true), toReturnTrue);
@@ -5,7 +5,11 @@
 
 package ome.logic;
 
+import java.io.File;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import ome.annotations.RolesAllowed;
 import ome.api.IRepositoryInfo;
@@ -15,10 +19,10 @@ import ome.conditions.ResourceError;
 import ome.io.nio.OriginalFilesService;
 import ome.io.nio.PixelsService;
 import ome.io.nio.ThumbnailService;
+import ome.services.util.UnusedFileCleanup;
 import ome.tools.RepositoryTask;
 import ome.util.SqlAction;
 
-import org.apache.commons.io.FileSystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
@@ -51,8 +55,8 @@ public class RepositoryInfoImpl extends AbstractLevel2Service implements
     public final static long INITIAL_DELAY = 2 * 60 * 1000L;
 
     /**
-     * Percentage (100.0 - 0.0) of disk use which will cause an exception during
-     * {@link #sanityCheckRepository()}
+     * Default percentage (100.0 - 0.0) of disk use which will cause an
+     * exception during {@link #sanityCheckRepository()}
      */
     public final static double CRITICAL_USAGE = 95.0;
 
@@ -75,6 +79,18 @@ public class RepositoryInfoImpl extends AbstractLevel2Service implements
     /* JDBC operations for removedUnusedFiles */
     private transient SqlAction sql;
 
+    /* how many batches removeUnusedFiles may remove at once */
+    private transient int cleanupThreads = 1;
+
+    /* how many IDs removeUnusedFiles removes in each batch */
+    private transient int cleanupBatchSize = 1000;
+
+    /* percentage of disk use above which sanityCheckRepository fails */
+    private transient double criticalUsage = CRITICAL_USAGE;
+
+    /* if removeUnusedFiles is already running */
+    private final AtomicBoolean cleanupRunning = new AtomicBoolean(false);
+
     // Static state
     // =========================================================================
 
@@ -88,6 +104,12 @@ public class RepositoryInfoImpl extends AbstractLevel2Service implements
      */
     private volatile double lastUsage = 0.0;
 
+    /**
+     * Cached kilobytes available from the last true
+     * {@link #sanityCheckRepository()}, or -1 if never sampled
+     */
+    private volatile long lastFreeKb = -1;
+
     /**
      * Lock-object around the call to the true {@link #sanityCheckRepository()}.
      * Should be used to protected all sections of code which change
@@ -136,6 +158,34 @@ public class RepositoryInfoImpl extends AbstractLevel2Service implements
         this.sql = sql;
     }
 
+    /**
+     * Bean injection setter for how many batches of unused files may be
+     * removed at once by {@link #removeUnusedFiles()}
+     * @param cleanupThreads the number of removal threads
+     */
+    public void setCleanupThreads(int cleanupThreads) {
+        this.cleanupThreads = cleanupThreads;
+    }
+
+    /**
+     * Bean injection setter for how many objects' files
+     * {@link #removeUnusedFiles()} removes in each batch
+     * @param cleanupBatchSize the number of IDs in a batch
+     */
+    public void setCleanupBatchSize(int cleanupBatchSize) {
+        this.cleanupBatchSize = cleanupBatchSize;
+    }
+
+    /**
+     * Bean injection setter for the percentage of disk use above which
+     * {@link #sanityCheckRepository()} refuses further writes. A value of
+     * 100 or more disables the check.
+     * @param criticalUsage the critical percentage of disk use
+     */
+    public void setCriticalUsage(double criticalUsage) {
+        this.criticalUsage = criticalUsage;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -144,16 +194,9 @@ public class RepositoryInfoImpl extends AbstractLevel2Service implements
     @RolesAllowed("user")
     @Transactional(readOnly = true)
     public long getFreeSpaceInKilobytes() {
-        final long result;
-
-        try {
-            result = FileSystemUtils.freeSpaceKb(datadir);
-        } catch (Throwable t) {
-            log.error("Error retrieving usage in KB.", t);
-            throw new ResourceError(t.getMessage());
-        }
-        log.info("Total kilobytes free: {}", result);
-        return result;
+        refreshUsage();
+        log.debug("Total kilobytes free: {}", lastFreeKb);
+        return lastFreeKb;
     }
 
     /*
@@ -178,6 +221,58 @@ public class RepositoryInfoImpl extends AbstractLevel2Service implements
         throw new InternalException(DEPRECATED);
     }
 
+    /**
+     * Samples the space on the file system holding the data directory and
+     * caches the results for {@link #getFreeSpaceInKilobytes()} and
+     * {@link #sanityCheckRepository()}. Called periodically by the scheduler
+     * so that those rarely need to sample for themselves. This asks the file
+     * system directly rather than running <code>df</code>.
+     */
+    public void sampleUsage() {
+        final File dir = new File(datadir);
+        final long total = dir.getTotalSpace();
+        if (total == 0) {
+            throw new ResourceError("Cannot determine disk space of " + datadir);
+        }
+        final long usable = dir.getUsableSpace();
+        final long used = total - dir.getFreeSpace();
+        synchronized (lastLock) {
+            lastFreeKb = usable / 1024;
+            // As reported by df, blocks reserved for root are not counted
+            lastUsage = used + usable == 0 ? 100.0 : 100.0 * used / (used + usable);
+            lastCheck = System.currentTimeMillis();
+        }
+        if (lastUsage > criticalUsage) {
+            log.warn(String.format(
+                    "Server repository disk space usage (%.1f%%) exceeds %s%%: "
+                    + "writes are refused", lastUsage, criticalUsage));
+        }
+    }
+
+    /**
+     * Calls {@link #sampleUsage()} if the cached values are stale.
+     */
+    private void refreshUsage() {
+        if (needsSanityCheck()) {
+            synchronized (lastLock) {
+                // Check the time again, in case another thread
+                // updated the values.
+                if (needsSanityCheck()) {
+                    try {
+                        sampleUsage();
+                    } catch (Throwable t) {
+                        log.error(
+                                "Critical failure sanity checking repository.",
+                                t);
+                        throw new InternalException(
+                                "Error in sanityCheckRepository(): "
+                                        + t.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -203,20 +298,12 @@ public class RepositoryInfoImpl extends AbstractLevel2Service implements
      */
     public boolean needsSanityCheck() {
 
-        // Disabled in 4.0. See ticket:1230
-        // --------------------------------
-        // The getUsage() information is not being properly calculated
-        // and doing so in Java 1.5 requires undue hoop jumping.
-        if (true) {
-            return false;
-        }
-
         long time = System.currentTimeMillis();
         long elapsed = time - lastCheck;
 
         // If the usage is within 5% of the critical usage
         // return true regardless
-        if (lastUsage > CRITICAL_USAGE - 5.0) {
+        if (lastUsage > criticalUsage - 5.0) {
             return true;
         }
 
@@ -238,30 +325,13 @@ public class RepositoryInfoImpl extends AbstractLevel2Service implements
      */
     @RolesAllowed("user")
     public void sanityCheckRepository() throws InternalException {
-        if (needsSanityCheck()) {
-            synchronized (lastLock) {
-                // Check the time again, in case another thread
-                // updated the values.
-                if (needsSanityCheck()) {
-                    try {
-                        lastUsage = getUsageFraction() * 100;
-                    } catch (Throwable t) {
-                        log.error(
-                                "Critical failure sanity checking repository.",
-                                t);
-                        throw new InternalException(
-                                "Error in sanityCheckRepository(): "
-                                        + t.getMessage());
-                    }
-                    lastCheck = System.currentTimeMillis();
-                }
-            }
-        }
+        refreshUsage();
 
-        if (lastUsage > CRITICAL_USAGE) {
+        if (lastUsage > criticalUsage) {
             throw new ResourceError(String.format(
-                    "Server repository disk space usage (%s%%) exceeds %s%%",
-                    lastUsage, CRITICAL_USAGE));
+                    "Server repository disk space usage (%.1f%%) exceeds %s%%; "
+                    + "%d KB remain free. Writes are refused until space is freed.",
+                    lastUsage, criticalUsage, lastFreeKb));
         }
     }
 
@@ -273,29 +343,51 @@ public class RepositoryInfoImpl extends AbstractLevel2Service implements
     @RolesAllowed("user")
     public void removeUnusedFiles() {
 
-        RepositoryTask task = new RepositoryTask(sql);
-
-        // get ids for any objects marked as deleted
-        List<Long> files = task.getFileIds();
-        List<Long> pixels = task.getPixelIds();
-        List<Long> thumbs = task.getThumbnailIds();
-
-        // cleanup any files
-        if (files != null && files.size() > 0) {
-            log.info("Removing files: " + files);
-            fileService.removeFiles(files);
+        if (!cleanupRunning.compareAndSet(false, true)) {
+            log.info("Removal of unused files is already running");
+            return;
         }
-
-        // cleanup any pixels
-        if (pixels != null && pixels.size() > 0) {
-            log.info("Removing pixels: " + pixels);
-            pixelsService.removePixels(pixels);
-        }
-
-        // cleanup any thumbnails
-        if (thumbs != null && thumbs.size() > 0) {
-            log.info("Removing thumbnails: " + thumbs);
-            thumbnailService.removeThumbnails(thumbs);
+        try {
+            RepositoryTask task = new RepositoryTask(sql);
+
+            // progress is kept in the data directory so that a pass which
+            // is interrupted resumes from where it stopped
+            final File checkpoint = datadir == null ? null
+                    : new File(datadir, ".removeUnusedFiles");
+            final UnusedFileCleanup cleanup = new UnusedFileCleanup(
+                    checkpoint, cleanupThreads, cleanupBatchSize);
+
+            // get ids for any objects marked as deleted
+            cleanup.add("files", task.getFileIds(),
+                    new UnusedFileCleanup.Removal() {
+                        public void remove(List<Long> ids) {
+                            fileService.removeFiles(ids);
+                        }
+                    });
+            cleanup.add("pixels", task.getPixelIds(),
+                    new UnusedFileCleanup.Removal() {
+                        public void remove(List<Long> ids) {
+                            pixelsService.removePixels(ids);
+                        }
+                    });
+            cleanup.add("thumbnails", task.getThumbnailIds(),
+                    new UnusedFileCleanup.Removal() {
+                        public void remove(List<Long> ids) {
+                            thumbnailService.removeThumbnails(ids);
+                        }
+                    });
+
+            final Map<String, Integer> counts = cleanup.run();
+            log.info("Removed unused files for deleted objects: {}", counts);
+        } catch (ExecutionException e) {
+            log.error("Failed to remove unused files.", e.getCause());
+            throw new InternalException("Error in removeUnusedFiles(): "
+                    + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalException("Interrupted in removeUnusedFiles()");
+        } finally {
+            cleanupRunning.set(false);
         }
     }
 
@@ -26,6 +26,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -43,11 +45,16 @@ import ome.model.internal.Permissions.Right;
 import ome.model.internal.Permissions.Role;
 import ome.security.SecureAction;
 
+import org.hibernate.Hibernate;
 import org.hibernate.SessionFactory;
 import org.hibernate.metadata.ClassMetadata;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.ResourceUtils;
 
+import com.google.common.collect.ImmutableMap;
+
 /**
  * implementation of the ITypes service interface.
  *
@@ -59,6 +66,22 @@ public class TypesImpl extends AbstractLevel2Service implements ITypes {
 
     protected transient SessionFactory sf;
 
+    /**
+     * The ids of all entries of each enumeration class looked up so far, by
+     * value. Only ids are kept so that the entries themselves are always
+     * those of the current session. The entries are never modified; a
+     * class's entry is replaced as a whole when it is reloaded and dropped
+     * whenever an entry of that class may have been written.
+     */
+    private final transient ConcurrentMap<Class<?>, Entries> enumCache =
+            new ConcurrentHashMap<Class<?>, Entries>();
+
+    /**
+     * Milliseconds after loading an enumeration before a value missing from
+     * it causes the enumeration to be loaded again.
+     */
+    private transient volatile long missReloadInterval = 1000;
+
     /** injector for usage by the container. Not for general use 
      * @param sessions the session factory
      */
@@ -67,6 +90,18 @@ public class TypesImpl extends AbstractLevel2Service implements ITypes {
         sf = sessions;
     }
 
+    /**
+     * Sets for how long a value missing from a loaded enumeration is taken
+     * not to exist before the enumeration is loaded again to find values
+     * created by other servers. Values created through this service are
+     * found at once.
+     *
+     * @param missReloadInterval time in milliseconds
+     */
+    public void setMissReloadInterval(long missReloadInterval) {
+        this.missReloadInterval = missReloadInterval;
+    }
+
     public final Class<? extends ServiceInterface> getServiceInterface() {
         return ITypes.class;
     }
@@ -83,6 +118,7 @@ public class TypesImpl extends AbstractLevel2Service implements ITypes {
         Details d = getSecuritySystem().newTransientDetails(newEnum);
         newEnum.getDetails().copy(d);
         worldReadable(newEnum);
+        invalidate(Hibernate.getClass(newEnum));
         return getSecuritySystem().doAction(new SecureAction() {
             public IObject updateObject(IObject... iObjects) {
                 return up.saveAndReturnObject(iObjects[0]);
@@ -93,6 +129,7 @@ public class TypesImpl extends AbstractLevel2Service implements ITypes {
     @RolesAllowed("system")
     @Transactional(readOnly = false)
     public <T extends IEnum> T updateEnumeration(T oEnum) {
+        invalidate(Hibernate.getClass(oEnum));
         return iUpdate.saveAndReturnObject(oEnum);
     }
 
@@ -106,6 +143,7 @@ public class TypesImpl extends AbstractLevel2Service implements ITypes {
         for (Object o : listEnum) {
             IObject obj = (IObject) o;
             colEnum.add(obj);
+            invalidate(Hibernate.getClass(obj));
         }
         iUpdate.saveCollection(colEnum);
     }
@@ -113,6 +151,7 @@ public class TypesImpl extends AbstractLevel2Service implements ITypes {
     @RolesAllowed("system")
     @Transactional(readOnly = false)
     public <T extends IEnum> void deleteEnumeration(T oEnum) {
+        invalidate(Hibernate.getClass(oEnum));
         iUpdate.deleteObject(oEnum);
     }
 
@@ -123,14 +162,76 @@ public class TypesImpl extends AbstractLevel2Service implements ITypes {
 
     @RolesAllowed("user")
     public <T extends IEnum> T getEnumeration(Class<T> k, String string) {
-        IEnum e = iQuery.findByString(k, "value", string);
-        iQuery.initialize(e);
+        Entries entries = enumCache.get(k);
+        if (entries == null || !entries.ids.containsKey(string)
+                && System.currentTimeMillis() - entries.loaded >= missReloadInterval) {
+            // Not loaded yet, or perhaps created by another server since.
+            entries = loadEnumerations(k);
+        }
+        T e = find(k, entries, string);
+        if (e == null && entries.ids.containsKey(string)) {
+            // Deleted or replaced by another server since.
+            e = find(k, loadEnumerations(k), string);
+        }
         if (e == null) {
             throw new ApiUsageException(String.format(
                     "An %s enum does not exist with the value: %s",
                     k.getName(), string));
         }
-        return k.cast(e);
+        return e;
+    }
+
+    /**
+     * Loads the entry with the cached id of the given value into the current
+     * session, which callers may then attach to other objects as before.
+     * Only the query by value is saved: unless the session already holds the
+     * entry, loading it by id is still one query.
+     *
+     * @return <code>null</code> if the value or its entry is missing
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends IEnum> T find(Class<T> k, Entries entries,
+            String string) {
+        final Long id = entries.ids.get(string);
+        if (id == null) {
+            return null;
+        }
+        final T e = (T) iQuery.find(k, id);
+        // The id may have been reused for another value.
+        return e == null || !string.equals(e.getValue()) ? null : e;
+    }
+
+    /**
+     * Loads all entries of the given enumeration with a single query and
+     * caches their ids for {@link #getEnumeration(Class, String)}.
+     */
+    private Entries loadEnumerations(Class<? extends IEnum> k) {
+        final Map<String, Long> ids = new HashMap<String, Long>();
+        for (IEnum e : allEnumerations(k)) {
+            ids.put(e.getValue(), e.getId());
+        }
+        final Entries entries = new Entries(ImmutableMap.copyOf(ids),
+                System.currentTimeMillis());
+        enumCache.put(k, entries);
+        return entries;
+    }
+
+    /**
+     * Drops the cached entries of the given enumeration now and again once
+     * the current transaction completes, so that neither a concurrent lookup
+     * nor a rollback can leave stale entries behind.
+     */
+    private void invalidate(final Class<?> k) {
+        enumCache.remove(k);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronizationAdapter() {
+                        @Override
+                        public void afterCompletion(int status) {
+                            enumCache.remove(k);
+                        }
+                    });
+        }
     }
 
     @RolesAllowed("user")
@@ -244,6 +345,7 @@ public class TypesImpl extends AbstractLevel2Service implements ITypes {
                 }
             }
             property.clear();
+            invalidate(klass);
 
             List<IEnum> listOnDB = (List<IEnum>) allEnumerations(klass);
             List<IEnum> listToDel = new ArrayList<IEnum>();
@@ -359,4 +461,17 @@ public class TypesImpl extends AbstractLevel2Service implements ITypes {
         }
     }
 
+    /** The ids of an enumeration's entries by value, and when they were read. */
+    private static class Entries {
+
+        final Map<String, Long> ids;
+
+        final long loaded;
+
+        Entries(Map<String, Long> ids, long loaded) {
+            this.ids = ids;
+            this.loaded = loaded;
+        }
+    }
+
 }
@@ -129,18 +129,23 @@ public class GroupChmodStrategy implements ChmodStrategy,
         }
 
         public Map<String, Long> run(Session session, ExtendedMetadata em) {
+            return em.countLocks(session, null, lockChecks, clause(), groupID);
+        }
+
+        public boolean any(Session session, ExtendedMetadata em) {
+            return em.hasLocks(session, null, lockChecks, clause(), groupID);
+        }
+
+        private String clause() {
             StringBuilder sb = new StringBuilder();
-            sb.append("x.details.group.id = ");
-            sb.append(groupID);
+            sb.append("x.details.group.id = :group");
             sb.append(" and ");
-            sb.append("y.details.group.id = ");
-            sb.append(groupID);
+            sb.append("y.details.group.id = :group");
 
             if (drop.reduceGroup) {
                 sb.append(" and x.details.owner.id <> y.details.owner.id");
             }
-
-            return em.countLocks(session, null, lockChecks, sb.toString());
+            return sb.toString();
         }
     }
 
@@ -213,17 +218,23 @@ public class GroupChmodStrategy implements ChmodStrategy,
             throw new InternalException("Bad check:" + check);
         }
         Check c = ((Check) check);
-        Map<String, Long> counts = performRun(c);
 
-        long total = counts.get("*");
-        if (total > 0) {
+        // Only count the locks, for the message, once one has been found.
+        if (performRun(c, false) != null) {
+            Map<String, Long> counts = performRun(c, true);
             throw new SecurityViolation(String.format(
                     "Cannot change permissions on %s to %s due to locks:\n%s",
                     obj, c.perms, counts));
         }
     }
 
-    private Map<String, Long> performRun(Check c) {
+    /**
+     * Runs the check across all groups.
+     * @param count if the locks should be counted rather than only detected
+     * @return the lock counts if counting, otherwise an empty map if there
+     * are locks or {@code null} if there are none
+     */
+    private Map<String, Long> performRun(Check c, boolean count) {
         // Perform the operation across all groups.
         Map<String, Long> counts = null;
         Map<String, String> grpCtx = new HashMap<String, String>();
@@ -232,7 +243,11 @@ public class GroupChmodStrategy implements ChmodStrategy,
         try {
             ctx.publishMessage(new ContextMessage.Push(this, grpCtx));
             try {
-                counts = c.run(osf.getSession(), em);
+                if (count) {
+                    counts = c.run(osf.getSession(), em);
+                } else if (c.any(osf.getSession(), em)) {
+                    counts = Collections.emptyMap();
+                }
             } finally {
                 ctx.publishMessage(new ContextMessage.Pop(this, grpCtx));
             }
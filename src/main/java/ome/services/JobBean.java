@@ -28,6 +28,8 @@ import ome.util.ShallowCopy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Provides methods for submitting asynchronous tasks.
@@ -136,7 +138,9 @@ public class JobBean extends AbstractStatefulBean implements JobHandle,
             newJob.setScheduledFor(now);
         }
         JobStatus s = newJob.getStatus();
+        final boolean submitted;
         if (s == null) {
+            submitted = true;
             newJob.setStatus(new JobStatus(JobHandle.SUBMITTED));
         } else {
             // Verifying the status
@@ -157,6 +161,7 @@ public class JobBean extends AbstractStatefulBean implements JobHandle,
                     throw new ApiUsageException(
                             "Currently only SUBMITTED and WAITING are accepted as JobStatus");
                 }
+                submitted = s.getValue().equals(SUBMITTED);
             }
         }
         String m = newJob.getMessage();
@@ -170,10 +175,35 @@ public class JobBean extends AbstractStatefulBean implements JobHandle,
         newJob = secureSave(newJob);
 
         jobId = newJob.getId();
+        if (submitted) {
+            notifySubmitted(jobId);
+        }
 
         return jobId;
     }
 
+    /**
+     * Passes the new job to the {@link IProcessManager} once the current
+     * transaction has committed, since it is not visible to other
+     * transactions before then.
+     */
+    private void notifySubmitted(final long id) {
+        if (pm == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronizationAdapter() {
+                        @Override
+                        public void afterCommit() {
+                            pm.jobSubmitted(id);
+                        }
+                    });
+        } else {
+            pm.jobSubmitted(id);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -27,6 +27,7 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.NonWritableChannelException;
 import java.sql.SQLException;
+import java.util.Arrays;
 
 import ome.annotations.RolesAllowed;
 import ome.api.IAdmin;
@@ -43,6 +44,7 @@ import ome.io.nio.OriginalFilesService;
 import ome.model.core.OriginalFile;
 import ome.model.enums.ChecksumAlgorithm;
 import ome.security.policy.BinaryAccessPolicy;
+import ome.services.util.IncrementalChecksum;
 import ome.util.ShallowCopy;
 import ome.util.checksum.ChecksumProviderFactory;
 import ome.util.checksum.ChecksumType;
@@ -114,6 +116,18 @@ public class RawFileBean extends AbstractStatefulBean implements RawFileStore {
     /** the checksum provider factory singleton **/
     private transient ChecksumProviderFactory checksumProviderFactory;
 
+    /**
+     * running checksum of the file contents, kept up to date by writes at
+     * the end of the file so that {@link #save()} need not reread them
+     */
+    private transient IncrementalChecksum runningChecksum;
+
+    /** whether {@link #read(long, int)} may return the same array again */
+    private transient boolean reuseReadBuffer;
+
+    /** array returned by the last {@link #read(long, int)} if reusable */
+    private transient byte[] readBuffer;
+
     /** is file service checking for disk overflow */
     private transient boolean diskSpaceChecking;
 
@@ -235,13 +249,12 @@ public class RawFileBean extends AbstractStatefulBean implements RawFileStore {
 
             StopWatch checksum = new Slf4JStopWatch();
             try {
+                File f = new File(path);
                 if (file.getHasher() != null) {
                     final ChecksumType checksumType = checksumAlgorithms.get(file.getHasher().getValue());
-                    file.setHash(this.checksumProviderFactory
-                            .getProvider(checksumType).putFile(path).checksumAsString());
+                    file.setHash(checksum(checksumType, f));
                 }
 
-                File f = new File(path);
                 long size = f.length();
                 file.setSize(size);
                 file.setMtime(new java.sql.Timestamp(f.lastModified()));
@@ -271,6 +284,36 @@ public class RawFileBean extends AbstractStatefulBean implements RawFileStore {
         return null;
     }
 
+    /**
+     * Computes the checksum of the file at the given path. Where the
+     * algorithm allows, this continues from the bytes already hashed by
+     * previous calls and {@link #write(byte[], long, int)}, and only hashes
+     * the whole file when those do not cover it exactly.
+     */
+    private String checksum(ChecksumType checksumType, File f) {
+        if (runningChecksum == null
+                || runningChecksum.getType() != checksumType) {
+            runningChecksum = IncrementalChecksum.create(checksumType);
+        }
+        if (runningChecksum == null) {
+            return this.checksumProviderFactory.getProvider(checksumType)
+                    .putFile(f.getPath()).checksumAsString();
+        }
+        if (!runningChecksum.isValid()
+                || runningChecksum.getPosition() != f.length()) {
+            try {
+                runningChecksum.rehash(f);
+            } catch (FileNotFoundException fnfe) {
+                runningChecksum = null;
+                throw new RuntimeException(fnfe); // ticket:3140 handling
+            } catch (IOException ioe) {
+                runningChecksum = null;
+                throw new ResourceError("cannot checksum " + f + ": " + ioe);
+            }
+        }
+        return runningChecksum.checksumAsString();
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -296,6 +339,8 @@ public class RawFileBean extends AbstractStatefulBean implements RawFileStore {
     public void clean() {
         ioService = null;
         file = null;
+        runningChecksum = null;
+        readBuffer = null;
         closeFileBuffer();
         buffer = null;
     }
@@ -351,6 +396,7 @@ public class RawFileBean extends AbstractStatefulBean implements RawFileStore {
             file = null;
             closeFileBuffer();
             this.buffer = null;
+            runningChecksum = null;
 
             modified = false;
             file = iQuery.get(OriginalFile.class, fileId);
@@ -426,11 +472,23 @@ public class RawFileBean extends AbstractStatefulBean implements RawFileStore {
         errorIfNotLoaded();
         sec.checkRestriction(BinaryAccessPolicy.NAME, file);
 
-        byte[] rawBuf = new byte[length];
+        byte[] rawBuf;
+        if (!reuseReadBuffer) {
+            rawBuf = new byte[length];
+        } else {
+            if (readBuffer == null || readBuffer.length != length) {
+                readBuffer = new byte[length];
+            }
+            rawBuf = readBuffer;
+        }
         ByteBuffer buf = ByteBuffer.wrap(rawBuf);
 
         try {
             buffer.read(buf, position);
+            if (reuseReadBuffer && buf.hasRemaining()) {
+                // A short read leaves zeros, as in a newly allocated array.
+                Arrays.fill(rawBuf, buf.position(), length, (byte) 0);
+            }
         } catch (IOException e) {
             if (log.isDebugEnabled()) {
                 log.debug("Buffer could not be read.", e);
@@ -446,6 +504,9 @@ public class RawFileBean extends AbstractStatefulBean implements RawFileStore {
 
         try {
             if (length < buffer.size()) {
+                if (runningChecksum != null) {
+                    runningChecksum.invalidate();
+                }
                 buffer.truncate(length);
                 modified();
                 return true;
@@ -486,15 +547,22 @@ public class RawFileBean extends AbstractStatefulBean implements RawFileStore {
             iRepositoryInfo.sanityCheckRepository();
         }
 
+        final long start = position;
         try {
             do {
                 position += buffer.write(nioBuffer, position);
             } while (nioBuffer.hasRemaining());
             // Write was successful, update state.
             modified();
+            if (runningChecksum != null) {
+                runningChecksum.update(start, buf, 0, length);
+            }
         } catch (NonWritableChannelException nwce) {
             throw new SecurityViolation("File not writeable!");
         } catch (IOException e) {
+            if (runningChecksum != null) {
+                runningChecksum.invalidate();
+            }
             if (log.isDebugEnabled()) {
                 log.debug("Buffer write did not occur.", e);
             }
@@ -502,6 +570,18 @@ public class RawFileBean extends AbstractStatefulBean implements RawFileStore {
         }
     }
 
+    /**
+     * Whether {@link #read(long, int)} returns one array, overwritten by
+     * each subsequent read of the same length, rather than a new array per
+     * call. Only safe if callers are done with the bytes, e.g. have
+     * marshalled them, before reading again.
+     * @param reuseReadBuffer
+     *   a <code>boolean</code>
+     */
+    public void setReuseReadBuffer(boolean reuseReadBuffer) {
+        this.reuseReadBuffer = reuseReadBuffer;
+    }
+
     /**
      * getter disk overflow checking
      * @return See above.
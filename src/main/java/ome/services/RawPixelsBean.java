@@ -428,20 +428,15 @@ public class RawPixelsBean extends AbstractStatefulBean implements
     public synchronized byte[] getRegion(int arg0, long arg1) {
         errorIfNotLoaded();
 
-        PixelData pd = null;
-        byte[] bytes = null;
-
+        if (readBuffer == null || readBuffer.length != arg0) {
+            readBuffer = new byte[arg0];
+        }
         try {
-            pd = buffer.getRegion(arg0, arg1);
-            bytes = bufferAsByteArrayWithExceptionIfNull(pd.getData());
+            readBuffer = buffer.getRegionDirect(arg0, arg1, readBuffer);
         } catch (Exception e) {
             handleException(e);
-        } finally {
-            if (pd != null) {
-                pd.dispose();
-            }
         }
-        return bytes;
+        return readBuffer;
     }
 
     @RolesAllowed("user")
@@ -813,12 +808,6 @@ public class RawPixelsBean extends AbstractStatefulBean implements
         return new double[] { min, max };
     }
     
-    private synchronized byte[] bufferAsByteArrayWithExceptionIfNull(ByteBuffer buffer) {
-        byte[] b = new byte[buffer.capacity()];
-        buffer.get(b, 0, buffer.capacity());
-        return b;
-    }
-
     private synchronized void handleException(Exception e) {
 
         if (e instanceof RootException) {
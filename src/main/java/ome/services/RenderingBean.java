@@ -6,7 +6,6 @@ package ome.services;
 
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -524,13 +523,12 @@ public class RenderingBean implements RenderingEngine, Serializable {
     /**
      * Implemented as specified by the {@link RenderingEngine} interface.
      * 
-     * @see LocalCompress#compressToStream(BufferedImage, java.io.OutputStream)
+     * @see LocalCompress#compressToBytes(BufferedImage)
      */
     @RolesAllowed("user")
     public byte[] renderCompressed(PlaneDef pd) {
         rwl.writeLock().lock();
 
-        ByteArrayOutputStream byteStream = null;
         try {
             final Map<byte[], Integer> overlays = getMasks(pd);
             if (overlays.size() > 0) {
@@ -551,22 +549,12 @@ public class RenderingBean implements RenderingEngine, Serializable {
             sizeY = sizeY/stride;
             BufferedImage image = ImageUtil.createBufferedImage(buf, sizeX,
                     sizeY);
-            byteStream = new ByteArrayOutputStream();
-            compressionSrv.compressToStream(image, byteStream);
-            return byteStream.toByteArray();
+            return compressionSrv.compressToBytes(image);
         } catch (IOException e) {
             log.error("Could not compress rendered image.", e);
             throw new ResourceError(e.getMessage());
         } finally {
             rwl.writeLock().unlock();
-            try {
-                if (byteStream != null) {
-                    byteStream.close();
-                }
-            } catch (IOException e) {
-                log.error("Could not close byte stream.", e);
-                throw new ResourceError(e.getMessage());
-            }
         }
     }
 
@@ -626,14 +614,13 @@ public class RenderingBean implements RenderingEngine, Serializable {
     /**
      * Implemented as specified by the {@link RenderingEngine} interface.
      * 
-     * @see LocalCompress#compressToStream(BufferedImage, java.io.OutputStream)
+     * @see LocalCompress#compressToBytes(BufferedImage)
      */
     @RolesAllowed("user")
     public byte[] renderProjectedCompressed(int algorithm, int timepoint,
             int stepping, int start, int end) {
         rwl.writeLock().lock();
 
-        ByteArrayOutputStream byteStream = null;
         try {
             if (resolutionLevel != null)
             {
@@ -645,22 +632,12 @@ public class RenderingBean implements RenderingEngine, Serializable {
             int sizeY = pixelsObj.getSizeY();
             BufferedImage image = ImageUtil.createBufferedImage(buf, sizeX,
                     sizeY);
-            byteStream = new ByteArrayOutputStream();
-            compressionSrv.compressToStream(image, byteStream);
-            return byteStream.toByteArray();
+            return compressionSrv.compressToBytes(image);
         } catch (IOException e) {
             log.error("Could not compress rendered image.", e);
             throw new ResourceError(e.getMessage());
         } finally {
             rwl.writeLock().unlock();
-            try {
-                if (byteStream != null) {
-                    byteStream.close();
-                }
-            } catch (IOException e) {
-                log.error("Could not close byte stream.", e);
-                throw new ResourceError(e.getMessage());
-            }
         }
     }
 
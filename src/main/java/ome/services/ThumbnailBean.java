@@ -505,13 +505,12 @@ public class ThumbnailBean extends AbstractLevel2Service
      */
     private byte[] convertThumbnailToBytes(BufferedImage image, boolean inProgress)
             throws IOException {
+        if (!inProgress) {
+            return compressionService.compressToBytes(image);
+        }
         try (ByteArrayOutputStream byteStream = new ByteArrayOutputStream()) {
-            if (inProgress) {
-                compressInProgressImageToStream(image.getWidth(), image.getHeight(),
-                        byteStream, inProgressImageResource);
-            } else {
-                compressionService.compressToStream(image, byteStream);
-            }
+            compressInProgressImageToStream(image.getWidth(), image.getHeight(),
+                    byteStream, inProgressImageResource);
             return byteStream.toByteArray();
         }
     }
@@ -1370,19 +1369,11 @@ public class ThumbnailBean extends AbstractLevel2Service
                     BufferedImage.TYPE_INT_RGB);
         }
 
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
         try {
             return convertThumbnailToBytes(image, inProgress);
         } catch (IOException e) {
             log.error("Could not obtain thumbnail direct.", e);
             throw new ResourceError(e.getMessage());
-        } finally {
-            try {
-                byteStream.close();
-            } catch (IOException e) {
-                log.error("Could not close byte stream.", e);
-                throw new ResourceError(e.getMessage());
-            }
         }
     }
 
@@ -19,6 +19,7 @@ package ome.services.delete;
 
 import ome.io.nio.AbstractFileSystemService;
 import ome.services.delete.files.FileDeleter;
+import ome.services.delete.files.FileReclaimer;
 import ome.system.OmeroContext;
 import ome.tools.hibernate.ExtendedMetadata;
 
@@ -63,11 +64,21 @@ public class Deletion {
 
         protected ExtendedMetadata em;
 
+        protected FileReclaimer reclaimer;
+
         public Builder(AbstractFileSystemService afs, ExtendedMetadata em) {
             this.afs = afs;
             this.em = em;
         }
 
+        /**
+         * If set and enabled, binary files are removed in the background
+         * by the given {@link FileReclaimer}.
+         */
+        public void setReclaimer(FileReclaimer reclaimer) {
+            this.reclaimer = reclaimer;
+        }
+
         @Override
         public void setApplicationContext(ApplicationContext ctx)
             throws BeansException {
@@ -77,7 +88,7 @@ public class Deletion {
         @Override
         protected Deletion createInstance()
             throws Exception {
-            return new Deletion(afs, ctx);
+            return new Deletion(afs, ctx, reclaimer);
         }
 
         @Override
@@ -97,10 +108,19 @@ public class Deletion {
 
     private final AbstractFileSystemService afs;
 
+    private final FileReclaimer reclaimer;
+
     public Deletion(AbstractFileSystemService afs, OmeroContext ctx) {
+        this(afs, ctx, null);
+    }
+
+    public Deletion(AbstractFileSystemService afs, OmeroContext ctx,
+            FileReclaimer reclaimer) {
 
         this.afs = afs;
         this.ctx = ctx;
+        this.reclaimer = reclaimer != null && reclaimer.isEnabled()
+                ? reclaimer : null;
 
     }
 
@@ -108,11 +128,13 @@ public class Deletion {
      * For each Report use the map of tables to deleted ids to remove the files
      * under Files, Pixels and Thumbnails if the ids no longer exist in the db.
      * Create a map of failed ids (not yet passed back to client).
+     * If a {@link FileReclaimer} is in use, local files are only journaled
+     * here and are removed after this method returns.
       */
     public void deleteFiles(SetMultimap<String, Long> deleteTargets) {
         final StopWatch sw = new Slf4JStopWatch();
         try {
-            final FileDeleter files = new FileDeleter(ctx, afs, deleteTargets);
+            final FileDeleter files = new FileDeleter(ctx, afs, deleteTargets, reclaimer);
             files.run();
             if (files.getFailedFilesCount() > 0) {
                 log.warn(files.getWarning());
@@ -92,6 +92,16 @@ public abstract class AbstractFileDeletions {
         return failedFiles.size();
     }
 
+    /**
+     * Files registered via {@link #addLocalFile(File, long)} which have not
+     * been handled elsewhere. Used instead of {@link #deleteLocal()} when
+     * the deletion is to be done later by a {@link FileReclaimer}.
+     * @return the files which {@link #deleteLocal()} would remove
+     */
+    public Set<File> getLocalFiles() {
+        return localFiles.keySet();
+    }
+
     public long getBytesFailed() {
         return bytesFailed;
     }
@@ -18,8 +18,12 @@
 
 package ome.services.delete.files;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -54,6 +58,8 @@ public class FileDeleter {
 
     private final SetMultimap<String, Long> deleteTargets;
 
+    private final FileReclaimer reclaimer;
+
     private OriginalFileDeletions originalFD;
  
     private ThumbnailFileDeletions thumbFD;
@@ -67,23 +73,35 @@ public class FileDeleter {
     private long bytesFailed = 0;
 
 	public FileDeleter(OmeroContext ctx, AbstractFileSystemService afs, SetMultimap<String, Long> deleteTargets) {
+        this(ctx, afs, deleteTargets, null);
+    }
+
+    /**
+     * @param reclaimer if not null, local files are handed to it for removal
+     * in the background rather than being deleted by {@link #run()}. Only
+     * failures detected before that hand-off are then reported.
+     */
+    public FileDeleter(OmeroContext ctx, AbstractFileSystemService afs, SetMultimap<String, Long> deleteTargets,
+            FileReclaimer reclaimer) {
         this.ctx = ctx;
         this.afs = afs;
         this.deleteTargets = deleteTargets;
+        this.reclaimer = reclaimer;
     }
 
     public void run() {
         originalFD = new OriginalFileDeletions(afs, load(Type.OriginalFile), ctx);
-        filesFailed += originalFD.deleteLocal();
-        bytesFailed += originalFD.getBytesFailed();
-
         thumbFD = new ThumbnailFileDeletions(afs, load(Type.Thumbnail));
-        filesFailed += thumbFD.deleteLocal();
-        bytesFailed += thumbFD.getBytesFailed();
-
         pixelsFD = new PixelsFileDeletions(afs, load(Type.Pixels));
-        filesFailed += pixelsFD.deleteLocal();
-        bytesFailed += pixelsFD.getBytesFailed();
+
+        if (reclaimer == null || !reclaim()) {
+            deleteLocal(originalFD);
+            deleteLocal(thumbFD);
+            deleteLocal(pixelsFD);
+        } else {
+            bytesFailed += originalFD.getBytesFailed();
+            filesFailed += originalFD.getUndeletedFiles().length;
+        }
 
         undeletedFiles = new HashMap<String, long[]>();
         undeletedFiles.put(Type.OriginalFile.toString(), originalFD.getUndeletedFiles());
@@ -101,6 +119,31 @@ public class FileDeleter {
         }
     }
 
+    private void deleteLocal(AbstractFileDeletions deletions) {
+        filesFailed += deletions.deleteLocal();
+        bytesFailed += deletions.getBytesFailed();
+    }
+
+    /**
+     * Pass all the local files, including pyramids and their companion
+     * files, to the {@link FileReclaimer} as a single journaled batch.
+     * @return if the files were scheduled, otherwise they should be deleted
+     * immediately
+     */
+    private boolean reclaim() {
+        final List<File> files = new ArrayList<File>();
+        files.addAll(originalFD.getLocalFiles());
+        files.addAll(thumbFD.getLocalFiles());
+        files.addAll(pixelsFD.getLocalFiles());
+        try {
+            reclaimer.reclaim(files);
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not schedule background deletion; deleting now", e);
+            return false;
+        }
+    }
+
     /**
      * Lookup the ids which are scheduled for deletion.
      * @param fileType non-null
@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package ome.services.delete.files;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Removes binary files from disk in the background after the database
+ * transaction which deleted their objects has committed.
+ *
+ * Each call to {@link #reclaim(Collection)} first writes the paths to a
+ * journal file under the journal directory and forces it to disk. Only then
+ * are the paths queued for deletion by a fixed number of workers, which caps
+ * the I/O concurrency against the binary repository. A journal file is
+ * removed once all of its paths have been handled, so any journal files found
+ * by {@link #start()} belong to batches which were interrupted by a shutdown
+ * or crash and are replayed. Deleting a path that no longer exists is not an
+ * error, so replaying a partially completed batch is safe.
+ *
+ * @since 5.5.5
+ */
+public class FileReclaimer {
+
+    private static final Logger log = LoggerFactory.getLogger(FileReclaimer.class);
+
+    private static final String SUFFIX = ".pending";
+
+    /** Number of paths handled by a single worker task. */
+    private static final int CHUNK_SIZE = 64;
+
+    private final File journalDir;
+
+    private final int threads;
+
+    private final AtomicLong filesDeleted = new AtomicLong();
+
+    private final AtomicLong filesFailed = new AtomicLong();
+
+    private final AtomicLong bytesFailed = new AtomicLong();
+
+    private ExecutorService workers;
+
+    /**
+     * @param journalDir directory in which pending deletions are recorded
+     * @param threads maximum number of files deleted concurrently; zero or
+     * less disables background deletion
+     */
+    public FileReclaimer(File journalDir, int threads) {
+        this.journalDir = journalDir;
+        this.threads = threads;
+    }
+
+    /**
+     * @param journalDir directory in which pending deletions are recorded
+     * @param threads maximum number of files deleted concurrently; zero or
+     * less disables background deletion
+     */
+    public FileReclaimer(String journalDir, int threads) {
+        this(new File(journalDir), threads);
+    }
+
+    /**
+     * Starts the workers and replays any journal files left over from a
+     * previous run.
+     */
+    public synchronized void start() {
+        if (workers != null || !isEnabled()) {
+            return;
+        }
+        final AtomicInteger count = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, "FileReclaimer-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        if (!journalDir.isDirectory() && !journalDir.mkdirs()) {
+            log.warn("Cannot create journal directory: {}", journalDir);
+            return;
+        }
+        final File[] pending = journalDir.listFiles();
+        if (pending == null) {
+            return;
+        }
+        int replayed = 0;
+        for (File journal : pending) {
+            if (!journal.getName().endsWith(SUFFIX)) {
+                continue;
+            }
+            try {
+                schedule(journal, read(journal));
+                replayed++;
+            } catch (IOException e) {
+                log.error("Cannot replay deletion journal: " + journal, e);
+            }
+        }
+        if (replayed > 0) {
+            log.info("Replaying {} interrupted file deletion batch(es)", replayed);
+        }
+    }
+
+    /**
+     * Stops accepting work and waits briefly for queued deletions. Any
+     * batches not completed remain journaled for the next {@link #start()}.
+     */
+    public synchronized void stop() {
+        if (workers == null) {
+            return;
+        }
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers = null;
+    }
+
+    /**
+     * Durably records the given files for deletion and returns without
+     * waiting for them to be removed.
+     *
+     * @param files the files to remove, may be empty
+     * @throws IOException if the journal could not be written, in which
+     * case none of the files are scheduled
+     */
+    public void reclaim(Collection<File> files) throws IOException {
+        if (files.isEmpty()) {
+            return;
+        }
+        final List<String> paths = new ArrayList<String>(files.size());
+        for (File file : files) {
+            paths.add(file.getAbsolutePath());
+        }
+        final File journal = write(paths);
+        synchronized (this) {
+            if (workers == null) {
+                throw new IOException("FileReclaimer not started");
+            }
+            schedule(journal, paths);
+        }
+    }
+
+    /**
+     * @return if files should be passed to {@link #reclaim(Collection)}
+     * rather than deleted by the caller
+     */
+    public boolean isEnabled() {
+        return threads > 0;
+    }
+
+    public long getFilesDeleted() {
+        return filesDeleted.get();
+    }
+
+    public long getFilesFailed() {
+        return filesFailed.get();
+    }
+
+    public long getBytesFailed() {
+        return bytesFailed.get();
+    }
+
+    private File write(List<String> paths) throws IOException {
+        if (!journalDir.isDirectory() && !journalDir.mkdirs()) {
+            throw new IOException("Cannot create journal directory: " + journalDir);
+        }
+        final File tmp = new File(journalDir, UUID.randomUUID() + ".tmp");
+        final FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            final Writer writer = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
+            for (String path : paths) {
+                writer.write(path);
+                writer.write('\n');
+            }
+            writer.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        // Only complete journals carry the suffix which start() replays.
+        final File journal = new File(journalDir,
+                tmp.getName().replace(".tmp", SUFFIX));
+        if (!tmp.renameTo(journal)) {
+            FileUtils.deleteQuietly(tmp);
+            throw new IOException("Cannot rename journal: " + tmp);
+        }
+        return journal;
+    }
+
+    private List<String> read(File journal) throws IOException {
+        final List<String> paths = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                FileUtils.openInputStream(journal), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    paths.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return paths;
+    }
+
+    /**
+     * Splits a journaled batch into chunks for the workers. The journal file
+     * is removed by whichever chunk completes last.
+     */
+    private void schedule(final File journal, List<String> paths) {
+        final List<List<String>> chunks = new ArrayList<List<String>>();
+        for (List<String> chunk : Iterables.partition(paths, CHUNK_SIZE)) {
+            chunks.add(chunk);
+        }
+        final CountDownLatch remaining = new CountDownLatch(chunks.size());
+        if (chunks.isEmpty()) {
+            FileUtils.deleteQuietly(journal);
+            return;
+        }
+        for (final List<String> chunk : chunks) {
+            workers.execute(new Runnable() {
+                public void run() {
+                    for (String path : chunk) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            return; // Shutting down; left in the journal.
+                        }
+                        delete(new File(path));
+                    }
+                    remaining.countDown();
+                    if (remaining.getCount() == 0) {
+                        FileUtils.deleteQuietly(journal);
+                    }
+                }
+            });
+        }
+    }
+
+    private void delete(File file) {
+        if (!file.exists()) {
+            log.debug("File {} does not exist.", file);
+            return;
+        }
+        final long size = file.length();
+        if (file.delete()) {
+            filesDeleted.incrementAndGet();
+            log.debug("DELETED: {}", file);
+        } else {
+            filesFailed.incrementAndGet();
+            bytesFailed.addAndGet(size);
+            log.warn("Failed to delete {}", file);
+        }
+    }
+
+}
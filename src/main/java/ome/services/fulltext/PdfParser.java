@@ -6,115 +6,338 @@
  */
 package ome.services.fulltext;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PipedReader;
-import java.io.PipedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ome.services.messages.ParserOpenFileMessage;
+import ome.util.checksum.ChecksumProviderFactory;
+import ome.util.checksum.ChecksumProviderFactoryImpl;
+import ome.util.checksum.ChecksumType;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 
 /**
  * {@link FileParser} for "application/pdf" files using <a
  * href="http://pdfbox.org/">PDFBox</a>.
- * 
+ *
+ * The text is extracted by a fixed number of threads shared by all calls.
+ * If a cache directory and size are set, the text is kept there under the
+ * SHA-1 checksum of the PDF so that a file which is reindexed without having
+ * changed is not parsed again. Whenever text is added, the least recently
+ * used entries are removed until the directory is within its size, as are
+ * all entries unused for longer than the cache's age. Otherwise the text is
+ * written to a temporary file which is removed once indexing is done with it.
+ *
  * @author Josh Moore, josh at glencoesoftware.com
  */
-public class PdfParser extends FileParser {
+public class PdfParser extends FileParser implements DisposableBean {
 
     private final static Logger log = LoggerFactory.getLogger(PdfParser.class);
 
+    private final static ChecksumProviderFactory cpf = new ChecksumProviderFactoryImpl();
+
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    private int threads = 2;
+
+    private File cacheDir;
+
+    private long cacheSize = 0;
+
+    private long cacheAge = TimeUnit.DAYS.toMillis(7);
+
+    private ExecutorService executor;
+
+    /**
+     * @param threads how many PDF files may be parsed at once
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param cacheDir the directory in which to keep the extracted text, or
+     *        empty for the text not to be kept
+     */
+    public void setCacheDir(String cacheDir) {
+        this.cacheDir = StringUtils.isBlank(cacheDir) ? null : new File(cacheDir);
+    }
+
+    /**
+     * @param cacheSize how many bytes of text to keep in the cache directory,
+     *        or 0 for the text not to be kept
+     */
+    public void setCacheSize(long cacheSize) {
+        this.cacheSize = Math.max(0, cacheSize);
+    }
+
+    /**
+     * @param cacheDays after how many days without being used the text of a
+     *        file is removed from the cache directory, such as that of a
+     *        file which has since been deleted, or 0 for no limit
+     */
+    public void setCacheDays(int cacheDays) {
+        this.cacheAge = TimeUnit.DAYS.toMillis(Math.max(0, cacheDays));
+    }
+
     @Override
     public Iterable<Reader> doParse(File file) throws Exception {
 
-        final PdfThread pdfThread = new PdfThread(file);
-        this.context.publishEvent(new ParserOpenFileMessage(this,
-                pdfThread) {
+        boolean cached = cacheDir != null && cacheSize > 0;
+        File text = cached ? cachedText(file) : extract(file, null);
+        if (text == null) {
+            return EMPTY;
+        }
+
+        InputStreamReader input;
+        try {
+            input = new InputStreamReader(new FileInputStream(text),
+                    StandardCharsets.UTF_8);
+        } catch (FileNotFoundException e) {
+            if (!cached) {
+                throw e;
+            }
+            // Removed from the cache by a concurrent addition.
+            cached = false;
+            text = extract(file, null);
+            if (text == null) {
+                return EMPTY;
+            }
+            input = new InputStreamReader(new FileInputStream(text),
+                    StandardCharsets.UTF_8);
+        }
+        // Text which could not be added to the cache is removed after use.
+        final boolean temporary = !cached
+                || !cacheDir.equals(text.getParentFile())
+                || !text.getName().endsWith(".txt");
+        final File opened = text;
+        final Reader reader = new BufferedReader(input, BUFFER_SIZE);
+        this.context.publishEvent(new ParserOpenFileMessage(this, reader) {
             @Override
             public void close() {
                 try {
-                    pdfThread.close();
+                    reader.close();
                 } catch (Exception e) {
-                    log.warn("Error closing PdfThread " + pdfThread, e);
+                    log.warn("Error closing text of " + opened, e);
+                }
+                if (temporary) {
+                    FileUtils.deleteQuietly(opened);
                 }
             }
 
         });
 
-        pdfThread.start();
-        return wrap(pdfThread.getReader());
+        return wrap(reader);
+    }
+
+    /**
+     * Finds the text of the given PDF in the cache, extracting it first if it
+     * is not yet there.
+     */
+    private File cachedText(File file) throws Exception {
+        final String checksum = cpf.getProvider(ChecksumType.SHA1)
+                .putFile(file.getPath()).checksumAsString();
+        final File text = new File(cacheDir, checksum + ".txt");
+        if (text.isFile()) {
+            log.debug("Using cached text {} for {}", text, file);
+            // Keeps recently used text from being removed first.
+            text.setLastModified(System.currentTimeMillis());
+            return text;
+        }
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs() && !cacheDir.isDirectory()) {
+            log.warn("Cannot create PDF text cache {}", cacheDir);
+            return extract(file, null);
+        }
+        return extract(file, text);
+    }
+
+    /**
+     * Extracts the text of the given PDF on the shared threads.
+     *
+     * @param file the PDF
+     * @param text where to put the text, or <code>null</code> for a
+     *        temporary file
+     * @return the file holding the text, or <code>null</code> if the PDF
+     *         could not be read
+     */
+    private File extract(File file, File text) throws Exception {
+        final File target;
+        if (text == null) {
+            target = File.createTempFile("pdf", ".txt");
+        } else {
+            // Concurrent extractions of the same file each write their own.
+            target = File.createTempFile(text.getName(), ".tmp", cacheDir);
+        }
+        final Future<Boolean> extraction = executor().submit(new PdfExtraction(file, target));
+        boolean done = false;
+        try {
+            done = extraction.get();
+        } catch (InterruptedException e) {
+            extraction.cancel(true);
+            throw e;
+        } finally {
+            if (!done) {
+                FileUtils.deleteQuietly(target);
+            }
+        }
+        if (!done) {
+            return null;
+        } else if (text == null) {
+            return target;
+        } else if (target.renameTo(text) || text.isFile()) {
+            FileUtils.deleteQuietly(target);
+            prune(text);
+            return text;
+        }
+        log.warn("Cannot add {} to PDF text cache", text);
+        return target;
+    }
+
+    /**
+     * Removes the least recently used text from the cache directory until it
+     * is within its size, and any text unused for longer than its age. The
+     * given newest entry is always kept. Leftover temporary files of failed
+     * extractions are removed with the old text.
+     */
+    private synchronized void prune(File newest) {
+        final File[] entries = cacheDir.listFiles(new FileFilter() {
+            public boolean accept(File f) {
+                return f.isFile();
+            }
+        });
+        if (entries == null) {
+            return;
+        }
+        final long[] used = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            used[i] = entries[i].lastModified();
+        }
+        final Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.compare(used[b], used[a]);
+            }
+        });
+        final long oldest = cacheAge > 0 ? System.currentTimeMillis() - cacheAge
+                : Long.MIN_VALUE;
+        long size = newest.length();
+        for (Integer i : order) {
+            final File entry = entries[i];
+            if (entry.equals(newest)) {
+                continue;
+            }
+            final boolean text = entry.getName().endsWith(".txt");
+            if (text) {
+                size += entry.length();
+            }
+            if (used[i] < oldest || text && size > cacheSize) {
+                log.debug("Removing {} from PDF text cache", entry);
+                FileUtils.deleteQuietly(entry);
+            }
+        }
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "PdfParser-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    public synchronized void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
     }
 }
 
-class PdfThread extends Thread {
+/**
+ * Writes the text of a PDF to a file, returning whether the PDF could be
+ * read. Nothing is written for encrypted files.
+ */
+class PdfExtraction implements Callable<Boolean> {
+
+    private final static Logger log = LoggerFactory.getLogger(PdfExtraction.class);
 
-    private final static Logger log = LoggerFactory.getLogger(PdfThread.class);
+    private final static int BUFFER_SIZE = 64 * 1024;
 
     final File file;
-    final PipedWriter writer;
-    final PipedReader reader;
-    PDDocument document = null;
+    final File target;
 
-    PdfThread(File file) throws IOException {
+    PdfExtraction(File file, File target) {
         this.file = file;
-        reader = new PipedReader();
-        writer = new PipedWriter(reader);
+        this.target = target;
     }
 
-    Reader getReader() {
-        return reader;
-    }
-
-    @Override
-    public void run() {
+    public Boolean call() {
 
+        PDDocument document = null;
         try {
             document = PDDocument.load(file);
         } catch (IOException e) {
             log.warn("Could not load Pdf " + file, e);
-            try {
-                writer.close();
-            } catch (IOException ioe) {
-                // What can we do?
-            }
+            return false;
         }
 
         try {
-            if (document != null && !document.isEncrypted()) {
-                try {
-                    PDFTextStripper stripper = null;
-                    stripper = new PDFTextStripper();
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(target), StandardCharsets.UTF_8), BUFFER_SIZE);
+            try {
+                if (!document.isEncrypted()) {
+                    PDFTextStripper stripper = new PDFTextStripper();
                     stripper.writeText(document, writer);
-                } finally {
-                    close();
                 }
+            } finally {
+                writer.close();
             }
+            return true;
         } catch (IOException e) {
             log.warn("Error reading pdf file", e);
-        }
-    }
-
-    public void close() {
-        if (writer != null) {
-            try {
-                writer.close();
-            } catch (Exception e) {
-                log.warn("Error closing writer", e);
-            }
-        }
-        if (document != null) {
+            return false;
+        } finally {
             try {
                 document.close();
             } catch (Exception e) {
                 log.warn("Error closing PDF document", e);
             }
         }
-
     }
 
 }
@@ -356,17 +356,42 @@ public class GraphPolicyRule {
                 (this.propertyName != null && !classProperty.endsWith(propertyName))) {
                 return false;
             }
-            final Map<String, Details> newNamedTerms = new HashMap<String, Details>(namedTerms);
-            final MutableBoolean newIsCheckAllPermissions = new MutableBoolean(isCheckAllPermissions.booleanValue());
+            /* a term match can name only its own term so a failed match is undone by removing any name it added */
+            final String leftName = leftTerm.getName();
+            final String rightName = rightTerm.getName();
+            final boolean isLeftNew = leftName != null && !namedTerms.containsKey(leftName);
+            final boolean isRightNew = rightName != null && !namedTerms.containsKey(rightName);
+            final boolean previousIsCheckAllPermissions = isCheckAllPermissions.booleanValue();
             final boolean isMatch =
-                     leftTerm.isMatch(predicates, newNamedTerms, newIsCheckAllPermissions, leftDetails, isRequireNew) &&
-                    rightTerm.isMatch(predicates, newNamedTerms, newIsCheckAllPermissions, rightDetails, isRequireNew);
-            if (isMatch) {
-                namedTerms.putAll(newNamedTerms);
-                isCheckAllPermissions.setValue(newIsCheckAllPermissions.booleanValue());
+                     leftTerm.isMatch(predicates, namedTerms, isCheckAllPermissions, leftDetails, isRequireNew) &&
+                    rightTerm.isMatch(predicates, namedTerms, isCheckAllPermissions, rightDetails, isRequireNew);
+            if (!isMatch) {
+                if (isLeftNew) {
+                    namedTerms.remove(leftName);
+                }
+                if (isRightNew) {
+                    namedTerms.remove(rightName);
+                }
+                isCheckAllPermissions.setValue(previousIsCheckAllPermissions);
             }
             return isMatch;
         }
+
+        /**
+         * Cheaply check if this could match any relationship among the objects under review.
+         * @param index the objects under review
+         * @return {@code false} only if this cannot match
+         */
+        boolean isCandidate(ReviewIndex index) {
+            final Class<? extends IObject> leftClass = requiredClass(leftTerm);
+            final Class<? extends IObject> rightClass = requiredClass(rightTerm);
+            if (propertyName == null && notNullable == null) {
+                /* may also match among named terms with no link via the root object */
+                return index.hasInstance(leftClass) && index.hasInstance(rightClass);
+            }
+            return index.hasLinkedFrom(propertyName) && index.isRootInstance(rightClass) ||
+                   index.hasLinkedTo(propertyName) && index.isRootInstance(leftClass);
+        }
     }
 
     /**
@@ -458,6 +483,7 @@ public class GraphPolicyRule {
         final Set<String> commonTerms;
         final List<Change> changes;
         final String errorMessage;
+        final boolean isEveryMatcherRequired;
 
         /**
          * Construct a policy rule that affects the graph state.
@@ -478,6 +504,7 @@ public class GraphPolicyRule {
             this.commonTerms = commonTerms;
             this.changes = changes;
             this.errorMessage = null;
+            this.isEveryMatcherRequired = isEveryMatcherRequired();
         }
 
         /**
@@ -499,6 +526,170 @@ public class GraphPolicyRule {
             this.commonTerms = commonTerms;
             this.changes = Collections.emptyList();
             this.errorMessage = errorMessage;
+            this.isEveryMatcherRequired = isEveryMatcherRequired();
+        }
+
+        /**
+         * @return if this rule can have an effect only if every one of its matchers matches some object,
+         * rather than also through matching common terms
+         */
+        private boolean isEveryMatcherRequired() {
+            return commonTerms.isEmpty() || termMatchers.size() + relationshipMatchers.size() == 1;
+        }
+
+        /**
+         * Cheaply check if this rule's matchers could match any of the objects under review,
+         * considering only their classes and the linking properties.
+         * A rule for which this returns {@code false} would have no effect if reviewed.
+         * @param index the objects under review
+         * @return if the rule is worth reviewing
+         */
+        boolean isCandidate(ReviewIndex index) {
+            if (termMatchers.isEmpty() && relationshipMatchers.isEmpty()) {
+                return true;
+            }
+            for (final TermMatch matcher : termMatchers) {
+                if (index.hasInstance(requiredClass(matcher)) != isEveryMatcherRequired) {
+                    return !isEveryMatcherRequired;
+                }
+            }
+            for (final RelationshipMatch matcher : relationshipMatchers) {
+                if (matcher.isCandidate(index) != isEveryMatcherRequired) {
+                    return !isEveryMatcherRequired;
+                }
+            }
+            return isEveryMatcherRequired;
+        }
+    }
+
+    /**
+     * @param matcher a term matcher
+     * @return the class of which any object matched by the term must be an instance, may be {@code null}
+     */
+    private static Class<? extends IObject> requiredClass(TermMatch matcher) {
+        if (matcher instanceof NewTermMatch) {
+            return ((NewTermMatch) matcher).requiredClass;
+        } else {
+            return ((ExistingTermMatch) matcher).refersTo.requiredClass;
+        }
+    }
+
+    /**
+     * The objects under review by {@link GraphPolicy#review(Map, Details, Map, Set, boolean)} indexed by class and property
+     * so that many rules may quickly be checked for whether they could apply.
+     * Answers are computed on demand and remembered for the rest of the review.
+     * @since 5.5.5
+     */
+    private static class ReviewIndex {
+        private final Map<String, Set<Details>> linkedFrom;
+        private final Details rootObject;
+        private final Map<String, Set<Details>> linkedTo;
+        private final Map<Class<?>, Boolean> hasInstance = new HashMap<Class<?>, Boolean>();
+        private final Map<Class<?>, Boolean> isRootInstance = new HashMap<Class<?>, Boolean>();
+        private final Map<String, Boolean> hasLinkedFrom = new HashMap<String, Boolean>();
+        private final Map<String, Boolean> hasLinkedTo = new HashMap<String, Boolean>();
+        private Set<Details> allObjects = null;
+        private Set<Class<? extends IObject>> allClasses = null;
+
+        /**
+         * Construct an index of the objects under review.
+         * @param linkedFrom details of the objects linking to the root object, by property
+         * @param rootObject details of the root objects
+         * @param linkedTo details of the objects linked by the root object, by property
+         */
+        ReviewIndex(Map<String, Set<Details>> linkedFrom, Details rootObject, Map<String, Set<Details>> linkedTo) {
+            this.linkedFrom = linkedFrom;
+            this.rootObject = rootObject;
+            this.linkedTo = linkedTo;
+        }
+
+        /**
+         * @return all the objects under review, not to be modified
+         */
+        Set<Details> getAllObjects() {
+            if (allObjects == null) {
+                allObjects = GraphPolicy.allObjects(linkedFrom.values(), rootObject, linkedTo.values());
+            }
+            return allObjects;
+        }
+
+        /**
+         * @param requiredClass a model object class, may be {@code null}
+         * @return if any object under review is an instance of the class
+         */
+        boolean hasInstance(Class<? extends IObject> requiredClass) {
+            if (requiredClass == null) {
+                return true;
+            }
+            Boolean result = hasInstance.get(requiredClass);
+            if (result == null) {
+                if (allClasses == null) {
+                    allClasses = new HashSet<Class<? extends IObject>>();
+                    for (final Details object : getAllObjects()) {
+                        allClasses.add(object.subject.getClass());
+                    }
+                }
+                result = false;
+                for (final Class<? extends IObject> objectClass : allClasses) {
+                    if (requiredClass.isAssignableFrom(objectClass)) {
+                        result = true;
+                        break;
+                    }
+                }
+                hasInstance.put(requiredClass, result);
+            }
+            return result;
+        }
+
+        /**
+         * @param requiredClass a model object class, may be {@code null}
+         * @return if the root object is an instance of the class
+         */
+        boolean isRootInstance(Class<? extends IObject> requiredClass) {
+            if (requiredClass == null) {
+                return true;
+            }
+            Boolean result = isRootInstance.get(requiredClass);
+            if (result == null) {
+                result = requiredClass.isAssignableFrom(rootObject.subject.getClass());
+                isRootInstance.put(requiredClass, result);
+            }
+            return result;
+        }
+
+        /**
+         * @param propertySuffix the end of the property name as in {@link RelationshipMatch}, may be {@code null}
+         * @return if any object links to the root object by such a property
+         */
+        boolean hasLinkedFrom(String propertySuffix) {
+            return hasProperty(linkedFrom, hasLinkedFrom, propertySuffix);
+        }
+
+        /**
+         * @param propertySuffix the end of the property name as in {@link RelationshipMatch}, may be {@code null}
+         * @return if the root object links to any object by such a property
+         */
+        boolean hasLinkedTo(String propertySuffix) {
+            return hasProperty(linkedTo, hasLinkedTo, propertySuffix);
+        }
+
+        private static boolean hasProperty(Map<String, Set<Details>> linked, Map<String, Boolean> known,
+                String propertySuffix) {
+            if (propertySuffix == null) {
+                return !linked.isEmpty();
+            }
+            Boolean result = known.get(propertySuffix);
+            if (result == null) {
+                result = false;
+                for (final String classProperty : linked.keySet()) {
+                    if (classProperty.endsWith(propertySuffix)) {
+                        result = true;
+                        break;
+                    }
+                }
+                known.put(propertySuffix, result);
+            }
+            return result;
         }
     }
 
@@ -970,6 +1161,7 @@ public class GraphPolicyRule {
                 Details rootObject, Map<String, Set<Details>> linkedTo,
                 Set<String> notNullable, boolean isErrorRules) throws GraphException {
             final Set<Details> changedObjects = new HashSet<Details>();
+            final ReviewIndex index = new ReviewIndex(linkedFrom, rootObject, linkedTo);
             for (final ParsedPolicyRule policyRule : isErrorRules ? policyRulesError : policyRulesChange) {
                 boolean conditionsSatisfied = true;
                 for (final ConditionMatch matcher : policyRule.conditionMatchers) {
@@ -978,11 +1170,13 @@ public class GraphPolicyRule {
                         break;
                     }
                 }
-                if (conditionsSatisfied) {
+                if (conditionsSatisfied && policyRule.isCandidate(index)) {
                     if (policyRule.termMatchers.size() + policyRule.relationshipMatchers.size() == 1) {
-                        reviewWithSingleMatch(linkedFrom, rootObject, linkedTo, notNullable, policyRule, changedObjects);
+                        reviewWithSingleMatch(linkedFrom, rootObject, linkedTo, notNullable, policyRule, changedObjects,
+                                index);
                     } else {
-                        reviewWithManyMatches(linkedFrom, rootObject, linkedTo, notNullable, policyRule, changedObjects);
+                        reviewWithManyMatches(linkedFrom, rootObject, linkedTo, notNullable, policyRule, changedObjects,
+                                index);
                     }
                 }
             }
@@ -998,16 +1192,17 @@ public class GraphPolicyRule {
          * @param notNullable which properties are not nullable
          * @param policyRule the policy rule to consider applying
          * @param changedObjects the set of details of objects that result from applied changes
+         * @param index the objects under review
          * @throws GraphException if a term named for a change is not defined in the matching
          */
         private void reviewWithSingleMatch(Map<String, Set<Details>> linkedFrom,
                 Details rootObject, Map<String, Set<Details>> linkedTo, Set<String> notNullable,
-                ParsedPolicyRule policyRule, Set<Details> changedObjects) throws GraphException {
+                ParsedPolicyRule policyRule, Set<Details> changedObjects, ReviewIndex index) throws GraphException {
             final SortedMap<String, Details> namedTerms = new TreeMap<String, Details>();
             final MutableBoolean isCheckAllPermissions = new MutableBoolean(true);
             if (!policyRule.termMatchers.isEmpty()) {
                 /* apply the term matchers */
-                final Set<Details> allTerms = GraphPolicy.allObjects(linkedFrom.values(), rootObject, linkedTo.values());
+                final Set<Details> allTerms = index.getAllObjects();
                 for (final TermMatch matcher : policyRule.termMatchers) {
                     for (final Details object : allTerms) {
                         if (matcher.isMatch(predicates, namedTerms, isCheckAllPermissions, object, true)) {
@@ -1058,17 +1253,18 @@ public class GraphPolicyRule {
          * @param notNullable which properties are not nullable
          * @param policyRule the policy rule to consider applying
          * @param changedObjects the set of details of objects that result from applied changes
+         * @param index the objects under review
          * @throws GraphException if a term named for a change is not defined in the matching
          */
         private void reviewWithManyMatches(Map<String, Set<Details>> linkedFrom, Details rootObject,
                 Map<String, Set<Details>> linkedTo, Set<String> notNullable, ParsedPolicyRule policyRule,
-                Set<Details> changedObjects) throws GraphException {
+                Set<Details> changedObjects, ReviewIndex index) throws GraphException {
             final SortedMap<String, Details> namedTerms = new TreeMap<String, Details>();
             final Multimap<String, Details> prohibitedTerms = HashMultimap.<String, Details>create();
             final MutableBoolean isCheckAllPermissions = new MutableBoolean(true);
             final Set<TermMatch> unmatchedTerms = new HashSet<TermMatch>(policyRule.termMatchers);
             final Set<Details> allTerms = unmatchedTerms.isEmpty() ? Collections.<Details>emptySet()
-                    : GraphPolicy.allObjects(linkedFrom.values(), rootObject, linkedTo.values());
+                    : index.getAllObjects();
             final Set<RelationshipMatch> unmatchedRelationships = new HashSet<RelationshipMatch>(policyRule.relationshipMatchers);
             boolean isPossibleMatch = true;
             /* try all the matchers against all the terms */
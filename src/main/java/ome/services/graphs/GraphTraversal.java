@@ -33,6 +33,8 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import ome.system.EventContext;
 import org.slf4j.Logger;
@@ -44,7 +46,6 @@ import org.hibernate.Session;
 import org.hibernate.proxy.HibernateProxy;
 
 import com.google.common.base.Joiner;
-import com.google.common.base.Objects;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
@@ -80,6 +81,21 @@ public class GraphTraversal {
     /* the full name of the model object classes for which subclasses need not be queried */
     private static final Set<String> NO_SUBCLASS_QUERY = Collections.synchronizedSet(new HashSet<String>());
 
+    /* canonical instances of class and property names so that the many tuples share them */
+    private static final ConcurrentMap<String, String> NAMES = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Find the canonical instance of the given class or property name.
+     * The tuples below hold only canonical names so that millions of them need not each hold their own copy,
+     * and so that their equality may usually be determined by reference.
+     * @param name a class or property name
+     * @return the canonical instance of the name
+     */
+    private static String canonical(String name) {
+        final String existing = NAMES.putIfAbsent(name, name);
+        return existing == null ? name : existing;
+    }
+
     /**
      * A tuple noting the state of a mapped object instance in the current graph traversal.
      * @author m.t.b.carroll@dundee.ac.uk
@@ -127,7 +143,7 @@ public class GraphTraversal {
 
         @Override
         public int hashCode() {
-            return Objects.hashCode(getClass(), subjectAsCI);
+            return subjectAsCI.hashCode();
         }
 
         @Override
@@ -162,7 +178,7 @@ public class GraphTraversal {
          * @param id an instance ID
          */
         CI(String className, long id) {
-            this.className = className;
+            this.className = canonical(className);
             this.id = id;
         }
 
@@ -172,9 +188,9 @@ public class GraphTraversal {
          */
         CI(IObject object) {
             if (object instanceof HibernateProxy) {
-                this.className = Hibernate.getClass(object).getName();
+                this.className = canonical(Hibernate.getClass(object).getName());
             } else {
-                this.className = object.getClass().getName();
+                this.className = canonical(object.getClass().getName());
             }
             this.id = object.getId();
         }
@@ -201,7 +217,7 @@ public class GraphTraversal {
             } else if (object instanceof CI) {
                 final CI other = (CI) object;
                 return this.id == other.id &&
-                        this.className.equals(other.className);
+                        (this.className == other.className || this.className.equals(other.className));
             } else {
                 return false;
             }
@@ -209,7 +225,8 @@ public class GraphTraversal {
 
         @Override
         public int hashCode() {
-            return Objects.hashCode(getClass(), className, id);
+            /* avoids the varargs array of Objects.hashCode in this very frequent call */
+            return 31 * className.hashCode() + Long.hashCode(id);
         }
 
         @Override
@@ -228,14 +245,16 @@ public class GraphTraversal {
         final String className;
         final String propertyName;
 
+        private String asString;
+
         /**
          * Construct an instance with the given field values.
          * @param className a class name
          * @param propertyName a property name
          */
         CP(String className, String propertyName) {
-            this.className = className;
-            this.propertyName = propertyName;
+            this.className = canonical(className);
+            this.propertyName = canonical(propertyName);
         }
 
         /**
@@ -253,8 +272,8 @@ public class GraphTraversal {
                 return true;
             } else if (object instanceof CP) {
                 final CP other = (CP) object;
-                return this.className.equals(other.className) &&
-                        this.propertyName.equals(other.propertyName);
+                return (this.className == other.className || this.className.equals(other.className)) &&
+                        (this.propertyName == other.propertyName || this.propertyName.equals(other.propertyName));
             } else {
                 return false;
             }
@@ -262,12 +281,15 @@ public class GraphTraversal {
 
         @Override
         public int hashCode() {
-            return Objects.hashCode(getClass(), className, propertyName);
+            return 31 * className.hashCode() + propertyName.hashCode();
         }
 
         @Override
         public String toString() {
-            return(className + "." + propertyName).intern();
+            if (asString == null) {
+                asString = canonical(className + "." + propertyName);
+            }
+            return asString;
         }
     }
 
@@ -291,8 +313,8 @@ public class GraphTraversal {
          * @param id an instance ID
          */
         CPI(String className, String propertyName, long id) {
-            this.className = className;
-            this.propertyName = propertyName;
+            this.className = canonical(className);
+            this.propertyName = canonical(propertyName);
             this.id = id;
         }
 
@@ -315,8 +337,8 @@ public class GraphTraversal {
             } else if (object instanceof CPI) {
                 final CPI other = (CPI) object;
                 return this.id == other.id &&
-                        this.className.equals(other.className) &&
-                        this.propertyName.equals(other.propertyName);
+                        (this.className == other.className || this.className.equals(other.className)) &&
+                        (this.propertyName == other.propertyName || this.propertyName.equals(other.propertyName));
             } else {
                 return false;
             }
@@ -324,7 +346,7 @@ public class GraphTraversal {
 
         @Override
         public int hashCode() {
-            return Objects.hashCode(getClass(), className, propertyName, id);
+            return 31 * (31 * className.hashCode() + propertyName.hashCode()) + Long.hashCode(id);
         }
 
         @Override
@@ -471,6 +493,7 @@ public class GraphTraversal {
     private final Planning planning;
     private final GraphPolicy policy;
     private final Processor processor;
+    private int queryCount = 0;
 
     /**
      * Construct a new instance of a graph traversal manager.
@@ -523,6 +546,9 @@ public class GraphTraversal {
             }
         }
         progress.add(Milestone.PLANNED);
+        if (log.isDebugEnabled()) {
+            log.debug("planned operation on " + targetSet.size() + " target objects with " + queryCount + " queries");
+        }
         /* report which objects are to be included in the operation or deleted so that it can proceed */
         final SetMultimap<String, Long> included = HashMultimap.create();
         for (final CI includedObject : planning.included) {
@@ -573,6 +599,9 @@ public class GraphTraversal {
             }
         }
         progress.add(Milestone.PLANNED);
+        if (log.isDebugEnabled()) {
+            log.debug("planned operation on " + targetSet.size() + " target objects with " + queryCount + " queries");
+        }
         /* report which objects are to be included in the operation or deleted so that it can proceed */
         final Collection<IObject> included = new ArrayList<IObject>(planning.included.size());
         for (final CI includedObject : planning.included) {
@@ -599,9 +628,15 @@ public class GraphTraversal {
             /* process any pending objects */
             while (!(planning.toProcess.isEmpty() && planning.findIfLast.isEmpty())) {
                 /* first process any cached objects that do not await orphan status determination */
-                final Set<CI> toProcess = new HashSet<CI>(planning.toProcess);
-                toProcess.retainAll(planning.cached);
-                toProcess.removeAll(planning.findIfLast);
+                final Set<CI> toProcess = new HashSet<CI>();
+                final Set<CI> toCache = new HashSet<CI>();
+                for (final CI object : planning.toProcess) {
+                    if (!planning.cached.contains(object)) {
+                        toCache.add(object);
+                    } else if (!planning.findIfLast.contains(object)) {
+                        toProcess.add(object);
+                    }
+                }
                 if (!toProcess.isEmpty()) {
                     if (optimisticReprocess != null && !Sets.difference(planning.toProcess, optimisticReprocess).isEmpty()) {
                         /* processing something beyond optimistic suggestion, so circumstances have changed */
@@ -613,8 +648,6 @@ public class GraphTraversal {
                     continue;
                 }
                 /* if none of the above exist, then fill the cache */
-                final Set<CI> toCache = new HashSet<CI>(planning.toProcess);
-                toCache.removeAll(planning.cached);
                 if (!toCache.isEmpty()) {
                     optimisticReprocess = null;
                     cache(toCache);
@@ -705,6 +738,7 @@ public class GraphTraversal {
             /* BasicACLVoter needs to check fuller instances of some objects */
             if (objectInstance instanceof OriginalFile) {
                 final String query = "SELECT mimetype, repo FROM OriginalFile WHERE id = :id";
+                queryCount++;
                 final Object[] result = (Object[]) session.createQuery(query).setLong("id", object.id).uniqueResult();
                 final OriginalFile file = new OriginalFile(object.id, true);
                 file.setMimetype((String) result[0]);
@@ -772,8 +806,8 @@ public class GraphTraversal {
                     /* determine the class of persisted objects without loading them */
                     final String rootQuery = "SELECT r.id, TYPE(r) FROM " + className + " r WHERE r.id IN (:ids)";
                     for (final List<Long> idsBatch : Iterables.partition(idsToQuery, BATCH_SIZE)) {
-                        for (final Object[] result :
-                            (List<Object[]>) session.createQuery(rootQuery).setParameterList("ids", idsBatch).list()) {
+                        final Query hibernateQuery = session.createQuery(rootQuery).setParameterList("ids", idsBatch);
+                        for (final Object[] result : this.<Object[]>list(hibernateQuery)) {
                             final Long id = (Long) result[0];
                             final Class<? extends IObject> objectClass = (Class<? extends IObject>) result[1];
                             final CI object = new CI(objectClass.getName(), id);
@@ -820,7 +854,7 @@ public class GraphTraversal {
             /* query and note details of objects */
             for (final List<Long> idsBatch : Iterables.partition(idsToQuery, BATCH_SIZE)) {
                 final Query hibernateQuery = session.createQuery(detailsQuery).setParameterList("ids", idsBatch);
-                for (final Object[] result : (List<Object[]>) hibernateQuery.list()) {
+                for (final Object[] result : this.<Object[]>list(hibernateQuery)) {
                     final ome.model.internal.Details details = ome.model.internal.Details.create();
                     final Long id = (Long) result[0];
                     details.setOwner((Experimenter) result[1]);
@@ -884,25 +918,45 @@ public class GraphTraversal {
     }
 
     /**
-     * Load a specific link property's object relationships into the various cache fields of {@link Planning}.
-     * @param linkProperty the link property being processed
+     * Run the given query, noting it in {@link #getQueryCount()}.
+     * @param query a query
+     * @return the query's results
+     */
+    @SuppressWarnings("unchecked")
+    private <X> List<X> list(Query query) {
+        queryCount++;
+        return query.list();
+    }
+
+    /**
+     * Query a specific link property's object relationships.
      * @param query the HQL to query the property's object relationships
      * @param ids the IDs of the related objects
-     * @return which linker objects are related to which linked objects by the given property
-     * @throws GraphException if the objects could not be converted to unloaded instances
+     * @param linkerToLinked the map into which to note the IDs of which linker objects link to which linked objects
      */
-    private List<Entry<CI,CI>> getLinksToCache(CP linkProperty, String query, Collection<Long> ids) throws GraphException {
-        final String linkedClassName = getLinkedClass(linkProperty);
-        final boolean propertyIsAccessible = model.isPropertyAccessible(linkProperty.className, linkProperty.propertyName);
-        final SetMultimap<Long, Long> linkerToLinked = HashMultimap.create();
+    private void queryLinks(String query, Collection<Long> ids, SetMultimap<Long, Long> linkerToLinked) {
         for (final List<Long> idsBatch : Iterables.partition(ids, BATCH_SIZE)) {
-            for (final Object[] result : (List<Object[]>) session.createQuery(query).setParameterList("ids", idsBatch).list()) {
+            final Query hibernateQuery = session.createQuery(query).setParameterList("ids", idsBatch);
+            for (final Object[] result : this.<Object[]>list(hibernateQuery)) {
                 linkerToLinked.put((Long) result[0], (Long) result[1]);
             }
         }
+    }
+
+    /**
+     * Load a specific link property's object relationships into the various cache fields of {@link Planning}.
+     * @param linkProperty the link property being processed
+     * @param linkerToLinked the IDs of which linker objects link to which linked objects by the given property
+     * @param objectsByClass the objects of the link's classes indexed by class name and object ID
+     * @return which linker objects are related to which linked objects by the given property
+     */
+    private List<Entry<CI,CI>> getLinksToCache(CP linkProperty, SetMultimap<Long, Long> linkerToLinked,
+            Map<String, Map<Long, CI>> objectsByClass) {
+        final String linkedClassName = getLinkedClass(linkProperty);
+        final boolean propertyIsAccessible = model.isPropertyAccessible(linkProperty.className, linkProperty.propertyName);
         final List<Entry<CI,CI>> linkerLinked = new ArrayList<Entry<CI,CI>>();
-        final Map<Long, CI> linkersById = findObjectDetails(linkProperty.className, linkerToLinked.keySet());
-        final Map<Long, CI> linkedsById = findObjectDetails(linkedClassName, new HashSet<Long>(linkerToLinked.values()));
+        final Map<Long, CI> linkersById = objectsByClass.get(linkProperty.className);
+        final Map<Long, CI> linkedsById = objectsByClass.get(linkedClassName);
         for (final Entry<Long, Long> linkerIdLinkedId : linkerToLinked.entries()) {
             final CI linker = linkersById.get(linkerIdLinkedId.getKey());
             final CI linked = linkedsById.get(linkerIdLinkedId.getValue());
@@ -926,6 +980,8 @@ public class GraphTraversal {
 
     /**
      * Load object instances and their links into the various cache fields of {@link Planning}.
+     * All the links are queried first so that the details of the objects at their other ends may then be found
+     * with one set of batched queries per class rather than per link property.
      * @param toCache the objects to cache
      * @throws GraphException if the objects could not be converted to unloaded instances
      */
@@ -945,21 +1001,46 @@ public class GraphTraversal {
                 }
             }
         }
-        /* query and cache forward links */
+        /* query forward and backward links, noting which objects are at their ends */
+        final Map<CP, SetMultimap<Long, Long>> forwardLinksFound = new HashMap<CP, SetMultimap<Long, Long>>();
+        final Map<CP, SetMultimap<Long, Long>> backwardLinksFound = new HashMap<CP, SetMultimap<Long, Long>>();
+        final SetMultimap<String, Long> linkEnds = HashMultimap.create();
         for (final Entry<CP, Collection<Long>> forwardLink : forwardLinksWanted.asMap().entrySet()) {
             final CP linkProperty = forwardLink.getKey();
             final String query = "SELECT linker.id, linked.id FROM " + linkProperty.className + " AS linker " +
                     "JOIN linker." + linkProperty.propertyName + " AS linked WHERE linker.id IN (:ids)";
-            for (final Entry<CI, CI> linkerLinked : getLinksToCache(linkProperty, query, forwardLink.getValue())) {
-                planning.forwardLinksCached.put(linkProperty.toCPI(linkerLinked.getKey().id), linkerLinked.getValue());
-            }
+            final SetMultimap<Long, Long> linkerToLinked = HashMultimap.create();
+            queryLinks(query, forwardLink.getValue(), linkerToLinked);
+            forwardLinksFound.put(linkProperty, linkerToLinked);
+            linkEnds.putAll(linkProperty.className, linkerToLinked.keySet());
+            linkEnds.putAll(getLinkedClass(linkProperty), linkerToLinked.values());
         }
-        /* query and cache backward links */
         for (final Entry<CP, Collection<Long>> backwardLink : backwardLinksWanted.asMap().entrySet()) {
             final CP linkProperty = backwardLink.getKey();
             final String query = "SELECT linker.id, linked.id FROM " + linkProperty.className + " AS linker " +
                     "JOIN linker." + linkProperty.propertyName + " AS linked WHERE linked.id IN (:ids)";
-            for (final Entry<CI, CI> linkerLinked : getLinksToCache(linkProperty, query, backwardLink.getValue())) {
+            final SetMultimap<Long, Long> linkerToLinked = HashMultimap.create();
+            queryLinks(query, backwardLink.getValue(), linkerToLinked);
+            backwardLinksFound.put(linkProperty, linkerToLinked);
+            linkEnds.putAll(linkProperty.className, linkerToLinked.keySet());
+            linkEnds.putAll(getLinkedClass(linkProperty), linkerToLinked.values());
+        }
+        /* find the details of all the linked objects at once for each class */
+        final Map<String, Map<Long, CI>> objectsByClass = new HashMap<String, Map<Long, CI>>();
+        for (final Entry<String, Collection<Long>> classIds : linkEnds.asMap().entrySet()) {
+            objectsByClass.put(classIds.getKey(), findObjectDetails(classIds.getKey(), classIds.getValue()));
+        }
+        /* cache forward links */
+        for (final Entry<CP, SetMultimap<Long, Long>> forwardLink : forwardLinksFound.entrySet()) {
+            final CP linkProperty = forwardLink.getKey();
+            for (final Entry<CI, CI> linkerLinked : getLinksToCache(linkProperty, forwardLink.getValue(), objectsByClass)) {
+                planning.forwardLinksCached.put(linkProperty.toCPI(linkerLinked.getKey().id), linkerLinked.getValue());
+            }
+        }
+        /* cache backward links */
+        for (final Entry<CP, SetMultimap<Long, Long>> backwardLink : backwardLinksFound.entrySet()) {
+            final CP linkProperty = backwardLink.getKey();
+            for (final Entry<CI, CI> linkerLinked : getLinksToCache(linkProperty, backwardLink.getValue(), objectsByClass)) {
                 planning.backwardLinksCached.put(linkProperty.toCPI(linkerLinked.getValue().id), linkerLinked.getKey());
             }
         }
@@ -1235,7 +1316,7 @@ public class GraphTraversal {
             final Query hibQuery = session.createQuery(directoryRepoQuery);
             hibQuery.setParameterList("ids", originalFileIdsBatch);
             @SuppressWarnings("unchecked")
-            final List<Object[]> results = hibQuery.list();
+            final List<Object[]> results = list(hibQuery);
             for (final Object[] result : results) {
                 final Long id = (Long) result[0];
                 final String repo = (String) result[1];
@@ -1253,7 +1334,7 @@ public class GraphTraversal {
             hibQuery.setParameter("repo", repo);
             hibQuery.setParameter("id", directoryId);
             @SuppressWarnings("unchecked")
-            final List<Long> contentIds = hibQuery.list();
+            final List<Long> contentIds = list(hibQuery);
             for (final long contentId : contentIds) {
                 if (originalFileIds.contains(contentId)) {
                     final CI content = new CI(originalFileClassName, contentId);
@@ -1702,6 +1783,15 @@ public class GraphTraversal {
         return linkers;
     }
 
+    /**
+     * Get how many HQL queries this graph traversal has issued so far.
+     * Useful for monitoring how planning scales with the size of the model object graph.
+     * @return the number of queries issued
+     */
+    public int getQueryCount() {
+        return queryCount;
+    }
+
     @Deprecated
     private boolean isOwnsAll = false;
 
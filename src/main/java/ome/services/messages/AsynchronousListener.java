@@ -0,0 +1,27 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package ome.services.messages;
+
+import org.springframework.context.ApplicationListener;
+
+/**
+ * Marker for {@link ApplicationListener} implementations which may receive
+ * their events on a background thread rather than on the thread which
+ * published them. {@link GlobalMulticaster} queues each event for such a
+ * listener and returns to the publisher immediately. Events are still
+ * delivered to any one listener in the order in which they were published.
+ *
+ * Only listeners which do not use the publisher's transaction, Hibernate
+ * session or security context should implement this interface, since none
+ * of those are available during asynchronous delivery. If a listener falls
+ * too far behind, new events for it are dropped and a warning is logged.
+ *
+ * @since 5.5.5
+ * @see GlobalMulticaster
+ */
+public interface AsynchronousListener {
+
+}
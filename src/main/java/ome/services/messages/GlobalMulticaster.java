@@ -7,14 +7,29 @@
 
 package ome.services.messages;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import ome.system.OmeroContext;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ApplicationEventMulticaster;
+import org.springframework.context.event.GenericApplicationListener;
+import org.springframework.context.event.GenericApplicationListenerAdapter;
 import org.springframework.context.event.SimpleApplicationEventMulticaster;
 import org.springframework.core.ResolvableType;
 
@@ -22,6 +37,12 @@ import org.springframework.core.ResolvableType;
  * Global {@link ApplicationEventMulticaster} which can be used to integrate
  * parent and child {@link OmeroContext} instances. A singleton, this instance
  * will delegate all method calls to a single static {@link SimpleApplicationEventMulticaster}.
+ *
+ * Listeners which implement {@link AsynchronousListener} are registered
+ * behind a per-listener queue which is drained in order on a small shared
+ * pool, so that they do not add to the latency of the publishing thread.
+ * Deliveries to them which take longer than
+ * {@link #setSlowListenerThreshold(long)} are logged.
  * 
  * @see ome.system.OmeroContext
  * @see ome.system.OmeroContext#publishEvent(ApplicationEvent)
@@ -29,8 +50,39 @@ import org.springframework.core.ResolvableType;
  */
 public class GlobalMulticaster implements ApplicationEventMulticaster, BeanFactoryAware {
 
+    private final static Logger log = LoggerFactory.getLogger(GlobalMulticaster.class);
+
     private final static SimpleApplicationEventMulticaster _em = new SimpleApplicationEventMulticaster();
 
+    /**
+     * Registered {@link AsynchronousListener} instances and the dispatcher
+     * which stands in for each of them in {@link #_em}.
+     */
+    private final static ConcurrentMap<ApplicationListener<?>, AsyncDispatcher> _async =
+            new ConcurrentHashMap<ApplicationListener<?>, AsyncDispatcher>();
+
+    /** Threads which drain the queues of {@link AsynchronousListener}s. */
+    private final static ExecutorService _pool = Executors.newFixedThreadPool(2,
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "GlobalMulticaster-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    /*
+     * Settings of this instance, applied to the asynchronous listeners which
+     * are added through it.
+     */
+
+    private volatile int asyncQueueSize = 10000;
+
+    private volatile long asyncOfferTimeout = 1000;
+
+    private volatile long slowListenerThreshold = 1000;
+
     /**
      * Keeps track of which instance this is. Only the first instance will
      * actively call {@link #multicastEvent(ApplicationEvent)}, but all
@@ -40,6 +92,32 @@ public class GlobalMulticaster implements ApplicationEventMulticaster, BeanFacto
     public GlobalMulticaster() {
     }
 
+    /**
+     * Maximum number of events queued for each {@link AsynchronousListener}
+     * added through this instance after the call.
+     */
+    public void setAsyncQueueSize(int asyncQueueSize) {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+    /**
+     * Milliseconds a publisher waits for room in a full queue before the
+     * event is dropped for that listener. Applies to listeners added through
+     * this instance after the call.
+     */
+    public void setAsyncOfferTimeout(long asyncOfferTimeout) {
+        this.asyncOfferTimeout = asyncOfferTimeout;
+    }
+
+    /**
+     * Milliseconds after which the delivery of a single event to an
+     * {@link AsynchronousListener} is logged as slow. Applies to listeners
+     * added through this instance after the call.
+     */
+    public void setSlowListenerThreshold(long slowListenerThreshold) {
+        this.slowListenerThreshold = slowListenerThreshold;
+    }
+
 
     @Override
     public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
@@ -48,7 +126,15 @@ public class GlobalMulticaster implements ApplicationEventMulticaster, BeanFacto
 
     @Override
     public void addApplicationListener(ApplicationListener arg0) {
-        _em.addApplicationListener(arg0);
+        if (arg0 instanceof AsynchronousListener) {
+            AsyncDispatcher dispatcher = new AsyncDispatcher(arg0,
+                    asyncQueueSize, asyncOfferTimeout, slowListenerThreshold);
+            if (_async.putIfAbsent(arg0, dispatcher) == null) {
+                _em.addApplicationListener(dispatcher);
+            }
+        } else {
+            _em.addApplicationListener(arg0);
+        }
     }
 
     /**
@@ -66,12 +152,18 @@ public class GlobalMulticaster implements ApplicationEventMulticaster, BeanFacto
 
     @Override
     public void removeAllListeners() {
+        _async.clear();
         _em.removeAllListeners();
     }
 
     @Override
     public void removeApplicationListener(ApplicationListener arg0) {
-        _em.removeApplicationListener(arg0);
+        AsyncDispatcher dispatcher = _async.remove(arg0);
+        if (dispatcher != null) {
+            _em.removeApplicationListener(dispatcher);
+        } else {
+            _em.removeApplicationListener(arg0);
+        }
     }
 
     @Override
@@ -88,4 +180,106 @@ public class GlobalMulticaster implements ApplicationEventMulticaster, BeanFacto
         //_em.removeApplicationListenerBean(arg0);
     }
 
-}
\ No newline at end of file
+    /**
+     * Stands in for an {@link AsynchronousListener}, answering the event type
+     * checks for it and queueing the events it accepts. At most one pool
+     * thread drains a given queue at a time, which preserves the order.
+     */
+    private static class AsyncDispatcher implements GenericApplicationListener, Runnable {
+
+        private final ApplicationListener<ApplicationEvent> delegate;
+
+        private final GenericApplicationListener adapter;
+
+        private final LinkedBlockingQueue<ApplicationEvent> queue;
+
+        private final long offerTimeout;
+
+        private final long slowThreshold;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private final AtomicLong dropped = new AtomicLong();
+
+        @SuppressWarnings("unchecked")
+        AsyncDispatcher(ApplicationListener<?> delegate, int queueSize,
+                long offerTimeout, long slowThreshold) {
+            this.delegate = (ApplicationListener<ApplicationEvent>) delegate;
+            this.adapter = new GenericApplicationListenerAdapter(delegate);
+            this.queue = new LinkedBlockingQueue<ApplicationEvent>(queueSize);
+            this.offerTimeout = offerTimeout;
+            this.slowThreshold = slowThreshold;
+        }
+
+        @Override
+        public boolean supportsEventType(ResolvableType eventType) {
+            return adapter.supportsEventType(eventType);
+        }
+
+        @Override
+        public boolean supportsSourceType(Class<?> sourceType) {
+            return adapter.supportsSourceType(sourceType);
+        }
+
+        @Override
+        public int getOrder() {
+            return adapter.getOrder();
+        }
+
+        @Override
+        public void onApplicationEvent(ApplicationEvent event) {
+            boolean queued;
+            try {
+                queued = queue.offer(event, offerTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+            if (!queued) {
+                long count = dropped.incrementAndGet();
+                if (count == 1 || count % 1000 == 0) {
+                    log.warn("Dropped {} event(s) for slow listener {}",
+                            count, delegate.getClass().getName());
+                }
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                _pool.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                ApplicationEvent event;
+                while ((event = queue.poll()) != null) {
+                    deliver(event);
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // Catch any event queued between the last poll and the reset.
+            schedule();
+        }
+
+        private void deliver(ApplicationEvent event) {
+            final long start = System.currentTimeMillis();
+            try {
+                delegate.onApplicationEvent(event);
+            } catch (RuntimeException rt) {
+                log.error("Error in asynchronous listener "
+                        + delegate.getClass().getName(), rt);
+            }
+            final long elapsed = System.currentTimeMillis() - start;
+            if (elapsed > slowThreshold) {
+                log.warn("Listener {} took {} ms for {} ({} queued)",
+                        delegate.getClass().getName(), elapsed,
+                        event.getClass().getSimpleName(), queue.size());
+            }
+        }
+    }
+
+}
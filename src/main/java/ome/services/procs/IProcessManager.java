@@ -32,4 +32,11 @@ public interface IProcessManager extends Runnable {
      */
     public Process runningProcess(long jobId);
 
+    /**
+     * Signals that the {@link ome.model.jobs.Job} with the given id has been
+     * committed as submitted, so that it can be dispatched without waiting
+     * for the next scheduled {@link #run()}.
+     */
+    public void jobSubmitted(long jobId);
+
 }
@@ -13,6 +13,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import ome.api.JobHandle;
 import ome.model.IObject;
@@ -61,6 +65,13 @@ public class ProcessManager extends ExecutionThread implements IProcessManager {
         protected Map<Long, Process> procMap = Collections
                 .synchronizedMap(new HashMap<Long, Process>());
 
+        /**
+         * Ids of the {@link JobStatus} values used, which are fixed for the
+         * lifetime of the database.
+         */
+        protected final ConcurrentMap<String, Long> statusIds =
+                new ConcurrentHashMap<String, Long>();
+
         public Work(SecuritySystem sec, Processor... procs) {
             this.sec = sec;
             if (procs == null) {
@@ -79,9 +90,26 @@ public class ProcessManager extends ExecutionThread implements IProcessManager {
                     "select j from Job j where status.id = :id",
                     new Parameters().addId(getSubmittedStatus(sf).getId()));
 
+            if (processors.isEmpty()) {
+                // Nothing could take a job, so skip offering each one.
+                if (!jobs.isEmpty()) {
+                    log.warn("No processors for " + jobs.size() + " submitted job(s)");
+                }
+                markWaiting(sf, jobs);
+                return null;
+            }
+
+            final long now = System.currentTimeMillis();
+            final List<Job> unclaimed = new ArrayList<Job>();
             for (Job job : jobs) {
-                startProcess(sf, job.getId());
+                if (!dispatch(job.getId())) {
+                    unclaimed.add(job);
+                } else if (log.isDebugEnabled() && job.getSubmitted() != null) {
+                    log.debug(String.format("Dispatched job:%s %s ms after submission",
+                            job.getId(), now - job.getSubmitted().getTime()));
+                }
             }
+            markWaiting(sf, unclaimed);
 
             return null;
         }
@@ -90,6 +118,17 @@ public class ProcessManager extends ExecutionThread implements IProcessManager {
          * 
          */
         public void startProcess(final ServiceFactory sf, final long jobId) {
+            if (!dispatch(jobId)) {
+                markWaiting(sf, Collections.singletonList(job(sf, jobId)));
+            }
+        }
+
+        /**
+         * Offers the job to each processor in turn.
+         *
+         * @return if a processor took the job
+         */
+        protected boolean dispatch(long jobId) {
             Process p = null;
 
             for (Processor proc : processors) {
@@ -104,21 +143,32 @@ public class ProcessManager extends ExecutionThread implements IProcessManager {
                 if (log.isWarnEnabled()) {
                     log.warn("No processor found for job:" + jobId);
                 }
+                return false;
+            }
+            procMap.put(jobId, p);
+            return true;
+        }
 
-                Job job = job(sf, jobId);
-                job.setStatus(getWaitingStatus(sf));
+        /**
+         * Sets all of the given jobs, which no processor took, to
+         * {@link JobHandle#WAITING} with a single save.
+         */
+        protected void markWaiting(final ServiceFactory sf, List<Job> jobs) {
+            if (jobs.isEmpty()) {
+                return;
+            }
+            final JobStatus waiting = getWaitingStatus(sf);
+            for (Job job : jobs) {
+                job.setStatus(waiting);
                 job.setMessage("No processor found for job.");
-                sec.doAction(new SecureAction() {
-                    public <T extends IObject> T updateObject(T... objs) {
-                        return sf.getUpdateService().saveAndReturnObject(
-                                objs[0]);
-                    }
-
-                }, job);
-            } else {
-                procMap.put(jobId, p);
             }
+            sec.doAction(new SecureAction() {
+                public <T extends IObject> T updateObject(T... objs) {
+                    sf.getUpdateService().saveArray(objs);
+                    return null;
+                }
 
+            }, jobs.toArray(new Job[jobs.size()]));
         }
 
         // Helpers ~
@@ -130,9 +180,17 @@ public class ProcessManager extends ExecutionThread implements IProcessManager {
         }
 
         private JobStatus getStatus(ServiceFactory sf, String status) {
-            JobStatus statusObj = sf.getTypesService().getEnumeration(
-                    JobStatus.class, status);
-            return statusObj;
+            Long id = statusIds.get(status);
+            if (id == null) {
+                JobStatus statusObj = sf.getTypesService().getEnumeration(
+                        JobStatus.class, status);
+                if (statusObj.getId() == null) {
+                    return statusObj;
+                }
+                id = statusObj.getId();
+                statusIds.put(status, id);
+            }
+            return new JobStatus(id, false);
         }
 
         private JobStatus getSubmittedStatus(ServiceFactory sf) {
@@ -153,6 +211,15 @@ public class ProcessManager extends ExecutionThread implements IProcessManager {
     private static Principal PRINCIPAL = new Principal("root", "user",
             "Processing");
 
+    /** Serializes scheduled and signalled runs. */
+    private final Object runLock = new Object();
+
+    /** Set while a signalled run is queued but has not yet started. */
+    private final AtomicBoolean dispatchPending = new AtomicBoolean();
+
+    /** Runs signalled dispatches; if null, jobs wait for a scheduled run. */
+    private java.util.concurrent.Executor dispatchExecutor;
+
     /**
      * main constructor which takes a non-null array of {@link Processor}
      * instances as its only argument. This array is copied, so modifications
@@ -172,6 +239,14 @@ public class ProcessManager extends ExecutionThread implements IProcessManager {
         super(manager, executor, new Work(sec, procs), PRINCIPAL);
     }
 
+    /**
+     * Sets the executor on which {@link #jobSubmitted(long)} runs the
+     * dispatch of newly submitted jobs.
+     */
+    public void setDispatchExecutor(java.util.concurrent.Executor dispatchExecutor) {
+        this.dispatchExecutor = dispatchExecutor;
+    }
+
     // Main methods ~
     // =========================================================================
 
@@ -185,7 +260,9 @@ public class ProcessManager extends ExecutionThread implements IProcessManager {
 
         try {
 
-            this.executor.execute(getPrincipal(), this.work);
+            synchronized (runLock) {
+                this.executor.execute(getPrincipal(), this.work);
+            }
 
         } catch (Exception e) {
             if (log.isErrorEnabled()) {
@@ -199,6 +276,32 @@ public class ProcessManager extends ExecutionThread implements IProcessManager {
 
     }
 
+    /**
+     * Queues a {@link #run()} unless one is already queued, in which case
+     * that run will also find this job. Does nothing if there is no
+     * dispatch executor or no {@link Processor} which could take the job.
+     */
+    public void jobSubmitted(long jobId) {
+        if (dispatchExecutor == null || ((Work) work).processors.isEmpty()) {
+            return;
+        }
+        if (!dispatchPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            dispatchExecutor.execute(new Runnable() {
+                public void run() {
+                    dispatchPending.set(false);
+                    ProcessManager.this.run();
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            dispatchPending.set(false);
+            log.warn("Could not dispatch job:" + jobId
+                    + "; leaving it for the next scheduled run");
+        }
+    }
+
     public Process runningProcess(long jobId) {
         Process p = ((Work) work).procMap.get(jobId);
         return p;
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.sessions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ome.model.internal.Permissions;
+import ome.model.meta.Experimenter;
+import ome.model.meta.Node;
+import ome.model.meta.Session;
+
+/**
+ * Append-only file of session states so that {@link SessionProviderInMemory}
+ * keeps its sessions over a server restart. Each call to
+ * {@link #write(Session)} appends a checksummed record of the session's
+ * current state; on {@link #open()} the records are replayed, the last record
+ * for each UUID winning. A record left incomplete by a crash is detected by
+ * its length or checksum and cut off together with anything after it.
+ *
+ * The file is rewritten with only the open sessions when opened and whenever
+ * superseded records come to outnumber the live ones. Records are flushed to
+ * the operating system but not forced to disk so a crash of the server loses
+ * nothing while a crash of the host may lose the latest changes.
+ *
+ * @since 5.5.5
+ */
+public class SessionJournal {
+
+    private final static Logger log = LoggerFactory.getLogger(SessionJournal.class);
+
+    private static final int VERSION = 1;
+
+    /** Superseded records tolerated before the journal is rewritten. */
+    private static final int COMPACT_MINIMUM = 1024;
+
+    private final File file;
+
+    private final Map<String, Session> latest = new LinkedHashMap<String, Session>();
+
+    private RandomAccessFile out;
+
+    private int records;
+
+    /**
+     * @param file the journal file, created if it does not exist
+     */
+    public SessionJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Replays the journal, truncating any damaged tail, then rewrites it to
+     * hold only the open sessions.
+     *
+     * @return the last recorded state of every session, open or closed
+     * @throws IOException if the journal cannot be read or written
+     */
+    public synchronized Collection<Session> open() throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create directory for session journal: " + parent);
+        }
+        latest.clear();
+        if (file.exists()) {
+            replay();
+        }
+        final Map<String, Session> all = new LinkedHashMap<String, Session>(latest);
+        compact();
+        return all.values();
+    }
+
+    /**
+     * Records the current state of the given session.
+     *
+     * @throws IOException if the record could not be appended
+     */
+    public synchronized void write(Session session) throws IOException {
+        if (out == null) {
+            throw new IllegalStateException("session journal is not open");
+        }
+        out.write(toRecord(session));
+        records++;
+        if (session.getClosed() == null) {
+            latest.put(session.getUuid(), session);
+        } else {
+            latest.remove(session.getUuid());
+        }
+        if (records - latest.size() > Math.max(COMPACT_MINIMUM, latest.size())) {
+            try {
+                compact();
+            } catch (IOException e) {
+                /* the record is written; try again after as many more */
+                log.warn("Failed to compact session journal {}", file, e);
+                records = latest.size();
+            }
+        }
+    }
+
+    /**
+     * Closes the journal file. Records already written are kept.
+     */
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Reads records until the end of the file or the first damaged record,
+     * from which point the file is truncated.
+     */
+    private void replay() throws IOException {
+        final RandomAccessFile in = new RandomAccessFile(file, "rw");
+        try {
+            long good = 0;
+            int count = 0;
+            while (true) {
+                final Session session;
+                try {
+                    final int length = in.readInt();
+                    if (length <= 0 || length > in.length() - in.getFilePointer() - 8) {
+                        break;
+                    }
+                    final byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    final CRC32 crc = new CRC32();
+                    crc.update(bytes, 0, length);
+                    if (crc.getValue() != in.readLong()) {
+                        break;
+                    }
+                    session = fromPayload(bytes);
+                } catch (EOFException e) {
+                    break;
+                } catch (IOException e) {
+                    log.warn("Unreadable record in session journal {}", file, e);
+                    break;
+                }
+                latest.put(session.getUuid(), session);
+                good = in.getFilePointer();
+                count++;
+            }
+            if (good < in.length()) {
+                log.warn("Discarding {} damaged bytes from end of session journal {}",
+                        in.length() - good, file);
+                in.setLength(good);
+            }
+            log.info("Replayed {} records for {} sessions from {}", count, latest.size(), file);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Replaces the journal with one holding a record for each open session.
+     * The new journal is written beside the old then renamed over it so that
+     * a crash leaves one or the other intact. If the replacement fails the
+     * journal is left open for further records.
+     */
+    private void compact() throws IOException {
+        final Map<String, Session> open = new LinkedHashMap<String, Session>();
+        for (final Session session : latest.values()) {
+            if (session.getClosed() == null) {
+                open.put(session.getUuid(), session);
+            }
+        }
+        latest.clear();
+        latest.putAll(open);
+        final File temporary = new File(file.getPath() + ".tmp");
+        final FileOutputStream stream = new FileOutputStream(temporary);
+        try {
+            for (final Session session : latest.values()) {
+                stream.write(toRecord(session));
+            }
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+        /* some platforms will not rename over an open file */
+        close();
+        try {
+            if (!temporary.renameTo(file)) {
+                /* some platforms will not rename over an existing file */
+                if (!file.delete() || !temporary.renameTo(file)) {
+                    throw new IOException("cannot replace session journal " + file);
+                }
+            }
+            records = latest.size();
+        } finally {
+            /* the old journal if the new could not replace it */
+            out = new RandomAccessFile(file, "rw");
+            out.seek(out.length());
+        }
+    }
+
+    private static byte[] toRecord(Session session) throws IOException {
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
+        final DataOutputStream data = new DataOutputStream(payload);
+        data.writeInt(VERSION);
+        data.writeLong(session.getId());
+        data.writeUTF(session.getUuid());
+        writeId(data, session.getOwner() == null ? null : session.getOwner().getId());
+        writeId(data, session.getSudoer() == null ? null : session.getSudoer().getId());
+        writeId(data, session.getNode() == null ? null : session.getNode().getId());
+        writeTime(data, session.getStarted());
+        writeTime(data, session.getClosed());
+        writeId(data, session.getTimeToIdle());
+        writeId(data, session.getTimeToLive());
+        writeString(data, session.getDefaultEventType());
+        writeString(data, session.getUserAgent());
+        writeString(data, session.getUserIP());
+        writeString(data, session.getMessage());
+        final Permissions permissions = session.getDetails().getPermissions();
+        writeString(data, permissions == null ? null : permissions.toString());
+        data.flush();
+        final byte[] bytes = payload.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        final ByteArrayOutputStream record = new ByteArrayOutputStream(bytes.length + 12);
+        final DataOutputStream framed = new DataOutputStream(record);
+        framed.writeInt(bytes.length);
+        framed.write(bytes);
+        framed.writeLong(crc.getValue());
+        framed.flush();
+        return record.toByteArray();
+    }
+
+    private static Session fromPayload(byte[] bytes) throws IOException {
+        final DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+        final int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("unknown session journal record version " + version);
+        }
+        final Session session = new Session();
+        session.setId(data.readLong());
+        session.setUuid(data.readUTF());
+        final Long ownerId = readId(data);
+        final Long sudoerId = readId(data);
+        final Long nodeId = readId(data);
+        session.setOwner(ownerId == null ? null : new Experimenter(ownerId, false));
+        session.setSudoer(sudoerId == null ? null : new Experimenter(sudoerId, false));
+        session.setNode(nodeId == null ? null : new Node(nodeId, false));
+        session.setStarted(readTime(data));
+        session.setClosed(readTime(data));
+        session.setTimeToIdle(readId(data));
+        session.setTimeToLive(readId(data));
+        session.setDefaultEventType(readString(data));
+        session.setUserAgent(readString(data));
+        session.setUserIP(readString(data));
+        session.setMessage(readString(data));
+        final String permissions = readString(data);
+        if (permissions != null) {
+            session.getDetails().setPermissions(Permissions.parseString(permissions));
+        }
+        return session;
+    }
+
+    private static void writeId(DataOutputStream data, Long value) throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            data.writeLong(value);
+        }
+    }
+
+    private static Long readId(DataInputStream data) throws IOException {
+        return data.readBoolean() ? data.readLong() : null;
+    }
+
+    private static void writeTime(DataOutputStream data, Timestamp value) throws IOException {
+        writeId(data, value == null ? null : value.getTime());
+    }
+
+    private static Timestamp readTime(DataInputStream data) throws IOException {
+        final Long time = readId(data);
+        return time == null ? null : new Timestamp(time);
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            data.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        return data.readBoolean() ? data.readUTF() : null;
+    }
+}
@@ -7,6 +7,7 @@ package ome.services.sessions;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import ome.api.local.LocalQuery;
 import ome.conditions.InternalException;
@@ -28,6 +29,8 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.cache.CacheBuilder;
+
 /**
  * Is for ISession a cache and will be kept there in sync? OR Factors out the
  * logic from ISession and SessionManagerI
@@ -53,6 +56,14 @@ public class SessionProviderInDb implements SessionProvider, ReadOnlyStatus.IsAw
 
     private final Executor executor;
 
+    private static final int CACHE_SIZE = 10000;
+
+    /* neither a session's ID nor whether it is a share ever changes so these need no expiry */
+    private final ConcurrentMap<String, Long> sessionIdByUuid =
+            CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).<String, Long>build().asMap();
+    private final ConcurrentMap<Long, Boolean> isShareById =
+            CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).<Long, Boolean>build().asMap();
+
     public SessionProviderInDb(Roles roles, NodeProvider nodeProvider, Executor executor) {
         this.roles = roles;
         this.nodeProvider = nodeProvider;
@@ -164,24 +175,45 @@ public class SessionProviderInDb implements SessionProvider, ReadOnlyStatus.IsAw
     @Override
     public Session findSessionById(long id, ServiceFactory sf) {
         final LocalQuery iQuery = (LocalQuery) sf.getQueryService();
-        final String sessionClass = iQuery.find(Share.class, id) == null ? "Session" : "Share";
-        return (Session) iQuery.findByQuery(
+        Boolean isShare = isShareById.get(id);
+        if (isShare == null) {
+            isShare = iQuery.find(Share.class, id) != null;
+        }
+        final String sessionClass = isShare ? "Share" : "Session";
+        final Session session = (Session) iQuery.findByQuery(
                         "select s from " + sessionClass + " s "
                         + "left outer join fetch s.sudoer "
                         + "left outer join fetch s.annotationLinks l "
                         + "left outer join fetch l.child a where s.id = :id",
                         new Parameters().addId(id).cache());
+        if (session != null) {
+            isShareById.put(id, isShare);
+            sessionIdByUuid.put(session.getUuid(), id);
+        }
+        return session;
     }
 
     @Override
     public Long findSessionIdByUuid(final String uuid, ServiceFactory sf) {
+        final Long cachedId = sessionIdByUuid.get(uuid);
+        if (cachedId != null) {
+            return cachedId;
+        }
         final Session session = sf.getQueryService().findByString(Session.class, "uuid", uuid);
-        return session == null ? null : session.getId();
+        if (session == null) {
+            return null;
+        }
+        sessionIdByUuid.put(uuid, session.getId());
+        return session.getId();
     }
 
     @Override
     public Long findSessionIdByUuid(final String uuid) {
-        return (Long) executor.executeSql(new Executor.SimpleSqlWork(this,
+        final Long cachedId = sessionIdByUuid.get(uuid);
+        if (cachedId != null) {
+            return cachedId;
+        }
+        final Long sessionId = (Long) executor.executeSql(new Executor.SimpleSqlWork(this,
                 "getSessionId") {
                     @Override
                     @Transactional(readOnly = true)
@@ -193,6 +225,10 @@ public class SessionProviderInDb implements SessionProvider, ReadOnlyStatus.IsAw
                         }
                     }
         });
+        if (sessionId != null) {
+            sessionIdByUuid.put(uuid, sessionId);
+        }
+        return sessionId;
     }
 
     @Override
@@ -19,6 +19,8 @@
 
 package ome.services.sessions;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.Map;
 import java.util.SortedSet;
@@ -29,6 +31,8 @@ import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.cache.CacheBuilder;
@@ -46,11 +50,13 @@ import ome.util.SqlAction;
 
 /**
  * In-memory implementation of {@link SessionProviderInDb}.
+ * If given a {@link SessionJournal} then the sessions are also kept on disk
+ * and reloaded when the server restarts.
  *
  * @author Chris Allan <callan@glencoesoftware.com>
  * @since 5.3.0
  */
-public class SessionProviderInMemory implements SessionProvider, ReadOnlyStatus.IsAware {
+public class SessionProviderInMemory implements SessionProvider, ReadOnlyStatus.IsAware, DisposableBean {
 
     private final static Logger log =
             LoggerFactory.getLogger(SessionProviderInMemory.class);
@@ -66,10 +72,68 @@ public class SessionProviderInMemory implements SessionProvider, ReadOnlyStatus.
     private final Map<String, Session> openSessions = new ConcurrentHashMap<>();
     private final Map<String, Session> closedSessions = CacheBuilder.newBuilder().maximumSize(512).<String, Session>build().asMap();
 
+    private final SessionJournal journal;
+
     public SessionProviderInMemory(Roles roles, NodeProvider nodeProvider, Executor executor) {
+        this(roles, nodeProvider, executor, null);
+    }
+
+    /**
+     * Construct a new in-memory session provider that keeps its sessions in the given journal file.
+     * @param roles the system roles
+     * @param nodeProvider the cluster node provider
+     * @param executor the executor for database work
+     * @param journalPath the path of the session journal, or {@code null} or empty to keep sessions only in memory
+     */
+    public SessionProviderInMemory(Roles roles, NodeProvider nodeProvider, Executor executor, String journalPath) {
         this.roles = roles;
         this.nodeProvider = nodeProvider;
         this.executor = executor;
+        if (journalPath == null || journalPath.trim().isEmpty()) {
+            this.journal = null;
+        } else {
+            this.journal = new SessionJournal(new File(journalPath.trim()));
+            final Iterable<Session> sessions;
+            try {
+                sessions = journal.open();
+            } catch (IOException e) {
+                throw new BeanCreationException("cannot open session journal " + journalPath, e);
+            }
+            long lowestId = currentSessionId.get();
+            for (final Session session : sessions) {
+                if (session.getClosed() == null) {
+                    openSessions.put(session.getUuid(), session);
+                } else {
+                    closedSessions.put(session.getUuid(), session);
+                }
+                lowestId = Math.min(lowestId, session.getId() - 1);
+            }
+            /* do not reuse the IDs of reloaded sessions */
+            currentSessionId.set(lowestId);
+            log.info("Reloaded {} open sessions from {}", openSessions.size(), journalPath);
+        }
+    }
+
+    /**
+     * Record the session's current state in the journal, if there is one.
+     * Failure is logged rather than thrown because the session remains usable until restart.
+     * @param session a session
+     */
+    private void journal(Session session) {
+        if (journal != null) {
+            try {
+                journal.write(session);
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to journal session {}", session.getUuid(), e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
     }
 
     @Override
@@ -97,6 +161,7 @@ public class SessionProviderInMemory implements SessionProvider, ReadOnlyStatus.
             closedSessions.put(session.getUuid(), session);
             openSessions.remove(session.getUuid());
         }
+        journal(session);
         log.debug("Registered Session:{} ({})", session.getId(), session.getUuid());
         return session;
     }
@@ -122,6 +187,7 @@ public class SessionProviderInMemory implements SessionProvider, ReadOnlyStatus.
         session.setNode(node);
         session.setOwner(new Experimenter(roles.getRootId(), false));
         openSessions.put(session.getUuid(), session);
+        journal(session);
         return session;
     }
 
@@ -138,6 +204,7 @@ public class SessionProviderInMemory implements SessionProvider, ReadOnlyStatus.
             session.setClosed(new Timestamp(System.currentTimeMillis()));
             closedSessions.put(session.getUuid(), session);
             openSessions.remove(session.getUuid());
+            journal(session);
             log.debug("closed session {}", uuid);
         }
     }
@@ -4,6 +4,8 @@
  */
 package ome.services.sessions.stats;
 
+import java.util.concurrent.Executor;
+
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 
@@ -24,6 +26,8 @@ public class CounterFactory implements ApplicationEventPublisherAware {
 
     protected int methodHardLimit = Integer.MAX_VALUE;
 
+    protected Executor publishExecutor;
+
     public void setApplicationEventPublisher(
             ApplicationEventPublisher applicationEventPublisher) {
         this.publisher = applicationEventPublisher;
@@ -41,14 +45,25 @@ public class CounterFactory implements ApplicationEventPublisherAware {
         this.methodHardLimit = methodHardLimit;
     }
 
+    /**
+     * Executor passed to each {@link LongCounter} for publishing messages.
+     * If null, messages are published on the incrementing thread.
+     */
+    public void setPublishExecutor(Executor publishExecutor) {
+        this.publishExecutor = publishExecutor;
+    }
+
     public SessionStats createStats() {
         ObjectsReadCounter read = new ObjectsReadCounter(objectsReadHardLimit);
         read.setApplicationEventPublisher(publisher);
+        read.setPublishExecutor(publishExecutor);
         ObjectsWrittenCounter written = new ObjectsWrittenCounter(
                 objectsWrittenHardLimit);
         written.setApplicationEventPublisher(publisher);
+        written.setPublishExecutor(publishExecutor);
         MethodCounter methods = new MethodCounter(methodHardLimit);
         methods.setApplicationEventPublisher(publisher);
+        methods.setPublishExecutor(publishExecutor);
         return new SimpleSessionStats(read, written, methods);
     }
 
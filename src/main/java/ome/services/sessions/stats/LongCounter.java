@@ -5,6 +5,12 @@
 
 package ome.services.sessions.stats;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
@@ -15,26 +21,42 @@ import ome.util.messages.InternalMessage;
 /**
  * Counter object which increments an internal long by some integer value,
  * and according to some strategy publishes an {@link InternalMessage} subclass.
- * 
+ *
+ * Increments are striped via a {@link LongAdder} so that many threads
+ * working in the same session do not contend on a single monitor. Summing
+ * the stripes is not free, so for intervals larger than {@link #SAMPLES}
+ * the sum is only taken for a random sample of increments, about
+ * {@link #SAMPLES} times per interval, and a message may be published up
+ * to roughly one sample late. The interval check is racy: only the thread
+ * which wins the update of the next threshold publishes, and the published
+ * value may include increments made concurrently. If a publish
+ * {@link Executor} is set, messages are handed to it rather than published
+ * on the calling thread.
+ *
  * @author Josh Moore, josh at glencoesoftware.com
  * @since Beta4
  */
 public abstract class LongCounter implements ApplicationEventPublisherAware {
 
+    /** How many times per interval the threshold is checked. */
+    private final static int SAMPLES = 64;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
-    
+
     private ApplicationEventPublisher publisher;
-    
-    private int interval = 0;
-    
-    private long last = 0;
-    
-    private final Object mutex = new Object();
-    
-    protected long count = 0;
-    
+
+    private Executor publishExecutor;
+
+    private final int interval;
+
+    /** Count at which the next message is to be published. */
+    private final AtomicLong next;
+
+    private final LongAdder count = new LongAdder();
+
     public LongCounter(int interval) {
         this.interval = interval;
+        this.next = new AtomicLong(interval);
     }
 
     public void setApplicationEventPublisher(
@@ -42,22 +64,63 @@ public abstract class LongCounter implements ApplicationEventPublisherAware {
         this.publisher = applicationEventPublisher;
     }
 
+    /**
+     * Sets the {@link Executor} used to publish messages. If null, the
+     * default, messages are published on the thread which increments.
+     */
+    public void setPublishExecutor(Executor publishExecutor) {
+        this.publishExecutor = publishExecutor;
+    }
+
+    /**
+     * @return the current value of the counter.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
     public void increment(int incr) {
-        synchronized (mutex) {
-            count = count + incr;
-            if (count >= (last+interval)) {
-                last = count;
-                InternalMessage message = message();
-                try {
-                    log.info("Publishing "+ message);
-                    publisher.publishEvent(message);
-                } catch (Throwable t) {
-                    log.error(message + " produced an error: "+t);
+        count.add(incr);
+        if (incr <= 0) {
+            return; // Decrements can never cross the threshold.
+        }
+        if (interval > SAMPLES
+                && ThreadLocalRandom.current().nextInt(interval) >= (long) incr * SAMPLES) {
+            return; // Not sampled, so skip summing the stripes.
+        }
+        final long threshold = next.get();
+        final long current = count.sum();
+        if (current >= threshold && next.compareAndSet(threshold, current + interval)) {
+            publish(message());
+        }
+    }
+
+    private void publish(final InternalMessage message) {
+        final Executor executor = publishExecutor;
+        if (executor == null) {
+            doPublish(message);
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    doPublish(message);
                 }
-            }
+            });
+        } catch (RejectedExecutionException ree) {
+            log.warn("Dropped " + message + ": " + ree);
+        }
+    }
+
+    private void doPublish(InternalMessage message) {
+        try {
+            log.info("Publishing "+ message);
+            publisher.publishEvent(message);
+        } catch (Throwable t) {
+            log.error(message + " produced an error: "+t);
         }
     }
- 
+
     /**
      * 
      * @return The message.
@@ -21,7 +21,7 @@ public class SessionsCreatedCounter extends LongCounter {
     }
 
     protected InternalMessage message() {
-        return new SessionsCreatedStatsMessage(this, count);
+        return new SessionsCreatedStatsMessage(this, getCount());
     }
 
 
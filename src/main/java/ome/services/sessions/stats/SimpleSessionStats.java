@@ -27,7 +27,7 @@ public class SimpleSessionStats implements SessionStats {
     }
 
     public long methodCount() {
-        return this.methods.count;
+        return this.methods.getCount();
     }
 
     public void methodOut() {
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import ome.util.checksum.ChecksumProvider;
+import ome.util.checksum.ChecksumType;
+
+import com.google.common.hash.HashCode;
+
+/**
+ * Running checksum of a file which is written from start to end, possibly
+ * over many calls, and whose checksum may be requested at any point along
+ * the way. Unlike a {@link ChecksumProvider}, taking a checksum does not end
+ * the computation, so each byte is only hashed once however often the file is
+ * saved. The strings produced are those of the corresponding
+ * {@link ChecksumProvider}.
+ *
+ * Only {@link ChecksumType}s whose state can be read without finishing it are
+ * supported; for others {@link #create(ChecksumType)} returns
+ * <code>null</code>. A write anywhere other than the current end of the
+ * hashed data leaves the instance invalid until {@link #rehash(File)}.
+ *
+ * @since 5.5.5
+ */
+public abstract class IncrementalChecksum {
+
+    private static final int READ_SIZE = 1024 * 1024;
+
+    private final ChecksumType type;
+
+    /** Number of bytes hashed, or -1 if the state no longer matches the file. */
+    private long position = 0;
+
+    private IncrementalChecksum(ChecksumType type) {
+        this.type = type;
+    }
+
+    /**
+     * @param type the checksum algorithm
+     * @return a new instance positioned at the start of an empty file, or
+     *         <code>null</code> if the algorithm cannot be computed
+     *         incrementally
+     */
+    public static IncrementalChecksum create(ChecksumType type) {
+        if (type == null) {
+            return null;
+        }
+        switch (type) {
+            case ADLER32:
+                return new ZipChecksum(type, new Adler32());
+            case CRC32:
+                return new ZipChecksum(type, new CRC32());
+            case MD5:
+                return Digest.create(type, "MD5");
+            case SHA1:
+                return Digest.create(type, "SHA-1");
+            default:
+                return null;
+        }
+    }
+
+    public ChecksumType getType() {
+        return type;
+    }
+
+    /**
+     * @return if the state covers the first {@link #getPosition()} bytes of
+     *         the file
+     */
+    public boolean isValid() {
+        return position >= 0;
+    }
+
+    /**
+     * @return the number of bytes hashed so far
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Records that the given bytes were written to the file at the given
+     * offset. Only a write at the current end of the hashed data is added to
+     * the state; any other write invalidates it.
+     *
+     * @return if the state is still valid
+     */
+    public boolean update(long offset, byte[] bytes, int start, int length) {
+        if (!isValid()) {
+            return false;
+        }
+        if (offset != position) {
+            invalidate();
+            return false;
+        }
+        hash(bytes, start, length);
+        position += length;
+        return true;
+    }
+
+    /**
+     * Marks the state as no longer matching the file, for instance after it
+     * was truncated or written out of order.
+     */
+    public void invalidate() {
+        position = -1;
+    }
+
+    /**
+     * Discards the state and hashes the whole of the given file again.
+     *
+     * @throws IOException if the file cannot be read, in which case the
+     *         state is left invalid
+     */
+    public void rehash(File file) throws IOException {
+        reset();
+        position = -1;
+        final byte[] bytes = new byte[READ_SIZE];
+        long read = 0;
+        final InputStream in = new FileInputStream(file);
+        try {
+            int count;
+            while ((count = in.read(bytes)) != -1) {
+                hash(bytes, 0, count);
+                read += count;
+            }
+        } finally {
+            in.close();
+        }
+        position = read;
+    }
+
+    /**
+     * @return the checksum of the bytes hashed so far, formatted as by
+     *         {@link ChecksumProvider#checksumAsString()}
+     * @throws IllegalStateException if the state is not valid
+     */
+    public String checksumAsString() {
+        if (!isValid()) {
+            throw new IllegalStateException("Checksum state is invalid");
+        }
+        return snapshot().toString();
+    }
+
+    protected abstract void hash(byte[] bytes, int start, int length);
+
+    protected abstract void reset();
+
+    protected abstract HashCode snapshot();
+
+    /** Algorithms from {@link java.util.zip} whose value can be read at will. */
+    private static class ZipChecksum extends IncrementalChecksum {
+
+        private final Checksum checksum;
+
+        ZipChecksum(ChecksumType type, Checksum checksum) {
+            super(type);
+            this.checksum = checksum;
+        }
+
+        @Override
+        protected void hash(byte[] bytes, int start, int length) {
+            checksum.update(bytes, start, length);
+        }
+
+        @Override
+        protected void reset() {
+            checksum.reset();
+        }
+
+        @Override
+        protected HashCode snapshot() {
+            return HashCode.fromInt((int) checksum.getValue());
+        }
+    }
+
+    /** Message digests, which are cloned to read a value without finishing. */
+    private static class Digest extends IncrementalChecksum {
+
+        private final MessageDigest digest;
+
+        private Digest(ChecksumType type, MessageDigest digest) {
+            super(type);
+            this.digest = digest;
+        }
+
+        /**
+         * @return a new instance, or <code>null</code> if the platform's
+         *         implementation of the algorithm cannot be cloned
+         */
+        static Digest create(ChecksumType type, String algorithm) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance(algorithm);
+                digest.clone();
+                return new Digest(type, digest);
+            } catch (NoSuchAlgorithmException e) {
+                return null;
+            } catch (CloneNotSupportedException e) {
+                return null;
+            }
+        }
+
+        @Override
+        protected void hash(byte[] bytes, int start, int length) {
+            digest.update(bytes, start, length);
+        }
+
+        @Override
+        protected void reset() {
+            digest.reset();
+        }
+
+        @Override
+        protected HashCode snapshot() {
+            try {
+                return HashCode.fromBytes(((MessageDigest) digest.clone()).digest());
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * One pass of removing the binary files left behind by deleted objects, as
+ * run by {@link ome.logic.RepositoryInfoImpl#removeUnusedFiles()}. Each kind
+ * of object is handled in turn, its IDs sorted and removed in batches by a
+ * bounded number of threads. After each round of batches the last ID done is
+ * written to a checkpoint file so that a pass which is interrupted resumes
+ * where it stopped rather than from the start. The checkpoint is removed when
+ * the pass completes.
+ *
+ * A resumed pass skips IDs at or below the checkpoint even if they were
+ * deleted since it was written. As every pass works through all the deletions
+ * ever logged, those are removed by the next complete pass.
+ *
+ * @since 5.5.5
+ */
+public class UnusedFileCleanup {
+
+    private final static Logger log = LoggerFactory.getLogger(UnusedFileCleanup.class);
+
+    /**
+     * Removes the binary files for a batch of object IDs.
+     */
+    public interface Removal {
+        void remove(List<Long> ids);
+    }
+
+    private final File checkpoint;
+
+    private final int threads;
+
+    private final int batchSize;
+
+    private final List<String> kinds = new ArrayList<String>();
+
+    private final List<Collection<Long>> ids = new ArrayList<Collection<Long>>();
+
+    private final List<Removal> removals = new ArrayList<Removal>();
+
+    /**
+     * @param checkpoint the file in which to record progress, or
+     *        <code>null</code> to always start from the beginning
+     * @param threads how many batches may be removed at once
+     * @param batchSize how many IDs to remove in each batch
+     */
+    public UnusedFileCleanup(File checkpoint, int threads, int batchSize) {
+        this.checkpoint = checkpoint;
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Adds a kind of object to the pass. Kinds are processed in the order
+     * in which they are added, which must be the same from one pass to the
+     * next for the checkpoint to be meaningful.
+     *
+     * @param kind the name of the kind of object, for the checkpoint and logs
+     * @param deletedIds the IDs of deleted objects of this kind, may be
+     *        <code>null</code>
+     * @param removal how to remove the objects' files
+     */
+    public void add(String kind, Collection<Long> deletedIds, Removal removal) {
+        kinds.add(kind);
+        ids.add(deletedIds == null ? Collections.<Long>emptyList() : deletedIds);
+        removals.add(removal);
+    }
+
+    /**
+     * Runs the pass, resuming from the checkpoint if there is one.
+     *
+     * @return how many IDs of each kind were passed for removal
+     * @throws ExecutionException if a removal failed, in which case the
+     *         checkpoint records the progress up to the failed round
+     * @throws InterruptedException if interrupted while waiting for removals
+     */
+    public Map<String, Integer> run() throws ExecutionException, InterruptedException {
+        final Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        String resumeKind = null;
+        long resumeId = Long.MIN_VALUE;
+        final String[] saved = readCheckpoint();
+        if (saved != null && kinds.contains(saved[0])) {
+            resumeKind = saved[0];
+            resumeId = Long.parseLong(saved[1]);
+            log.info("Resuming removal of unused files from {} {}", resumeKind, resumeId);
+        }
+        final AtomicInteger count = new AtomicInteger();
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, "UnusedFileCleanup-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            for (int index = 0; index < kinds.size(); index++) {
+                final String kind = kinds.get(index);
+                if (resumeKind != null) {
+                    if (!resumeKind.equals(kind)) {
+                        /* finished in the interrupted pass */
+                        counts.put(kind, 0);
+                        continue;
+                    }
+                    resumeKind = null;
+                } else {
+                    resumeId = Long.MIN_VALUE;
+                }
+                counts.put(kind, remove(workers, kind, ids.get(index), removals.get(index), resumeId));
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        deleteCheckpoint();
+        return counts;
+    }
+
+    private int remove(ExecutorService workers, String kind, Collection<Long> deletedIds,
+            final Removal removal, long afterId) throws ExecutionException, InterruptedException {
+        final TreeSet<Long> sorted = new TreeSet<Long>(deletedIds);
+        final List<Long> todo = new ArrayList<Long>(sorted.tailSet(afterId, false));
+        if (todo.isEmpty()) {
+            return 0;
+        }
+        final long start = System.currentTimeMillis();
+        int done = 0;
+        final List<Callable<Void>> round = new ArrayList<Callable<Void>>(threads);
+        for (final List<Long> batch : Iterables.partition(todo, batchSize)) {
+            round.add(new Callable<Void>() {
+                public Void call() {
+                    removal.remove(batch);
+                    return null;
+                }
+            });
+            done += batch.size();
+            if (round.size() == threads || done == todo.size()) {
+                for (final Future<Void> future : workers.invokeAll(round)) {
+                    future.get();
+                }
+                round.clear();
+                writeCheckpoint(kind, batch.get(batch.size() - 1));
+                log.debug("Removed {} of {} unused {}", done, todo.size(), kind);
+            }
+        }
+        log.info("Removed {} unused {} in {} ms", todo.size(), kind,
+                System.currentTimeMillis() - start);
+        return todo.size();
+    }
+
+    private String[] readCheckpoint() {
+        if (checkpoint == null || !checkpoint.isFile()) {
+            return null;
+        }
+        try {
+            final String[] saved = FileUtils.readFileToString(checkpoint).trim().split(" ");
+            if (saved.length == 2) {
+                Long.parseLong(saved[1]);
+                return saved;
+            }
+        } catch (IOException e) {
+            log.warn("Cannot read checkpoint {}", checkpoint, e);
+        } catch (NumberFormatException e) {
+            /* fall through to warning */
+        }
+        log.warn("Ignoring malformed checkpoint {}", checkpoint);
+        return null;
+    }
+
+    private void writeCheckpoint(String kind, long id) {
+        if (checkpoint == null) {
+            return;
+        }
+        final File temporary = new File(checkpoint.getPath() + ".tmp");
+        try {
+            FileUtils.writeStringToFile(temporary, kind + " " + id);
+            if (!temporary.renameTo(checkpoint)) {
+                FileUtils.deleteQuietly(checkpoint);
+                if (!temporary.renameTo(checkpoint)) {
+                    log.warn("Cannot replace checkpoint {}", checkpoint);
+                }
+            }
+        } catch (IOException e) {
+            /* the pass continues but would restart from an earlier point */
+            log.warn("Cannot write checkpoint {}", checkpoint, e);
+        }
+    }
+
+    private void deleteCheckpoint() {
+        if (checkpoint != null) {
+            FileUtils.deleteQuietly(checkpoint);
+        }
+    }
+}
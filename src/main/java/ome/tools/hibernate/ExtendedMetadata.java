@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -147,6 +148,26 @@ public interface ExtendedMetadata {
      */
     Map<String, Long> countLocks(Session session, Long id, String[][] lockChecks, String clause);
 
+    /**
+     * Like {@link #countLocks(Session, Long, String[][], String)} but with a
+     * group ID which, if not null, is bound to the parameter
+     * <code>:group</code> of the clause. Binding the group rather than
+     * writing it into the clause lets the formatted queries be reused for
+     * every group.
+     */
+    Map<String, Long> countLocks(Session session, Long id, String[][] lockChecks, String clause, Long groupId);
+
+    /**
+     * Like {@link #countLocks(Session, Long, String[][], String, Long)} but
+     * stops at the first lock found, for when only whether or not there are
+     * any locks matters. At most one row is fetched per check and the
+     * remaining checks are skipped as soon as one lock is seen.
+     *
+     * @return if {@link #countLocks(Session, Long, String[][], String, Long)}
+     * would have returned a positive total
+     */
+    boolean hasLocks(Session session, Long id, String[][] lockChecks, String clause, Long groupId);
+
     /**
      * Walks the data on what locks what
      * for "from" argument to see if there is any direct relationship to the
@@ -198,6 +219,23 @@ public static class Impl extends OnContextRefreshedEventListener implements Exte
 
     private final Map<String, Immutables> immutablesHolder = new HashMap<String, Immutables>();
 
+    /** Maximum number of formatted lock query sets kept. */
+    private final static int LOCK_QUERY_CACHE_SIZE = 512;
+
+    /**
+     * Formatted lock queries, one per check, keyed by the query template and
+     * the lock checks of a class. The lock checks come from
+     * {@link #lockedByHolder} so are the same instance for each call.
+     */
+    private final Map<LockQueryKey, String[]> lockQueryHolder =
+        Collections.synchronizedMap(new LinkedHashMap<LockQueryKey, String[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LockQueryKey, String[]> eldest) {
+                return size() > LOCK_QUERY_CACHE_SIZE;
+            }
+        });
+
     private final Map<String, String> collectionCountHolder = new HashMap<String, String>();
 
     private final Map<String, Class<IObject>> targetHolder = new HashMap<String, Class<IObject>>();
@@ -472,19 +510,79 @@ public static class Impl extends OnContextRefreshedEventListener implements Exte
 
     public Map<String, Long> countLocks(final Session session, final Long id,
             String[][] checks, String clause) {
+        return countLocks(session, id, checks, clause, null);
+    }
+
+    public Map<String, Long> countLocks(final Session session, final Long id,
+            String[][] checks, String clause, Long groupId) {
+
+        final String[] queries = lockQueries(
+                lockQueryTemplate("count(x.id)", id != null, clause), checks);
+        final Map<String, Long> counts = new HashMap<String, Long>();
+        long total = 0L;
+
+        // run the individual queries
+        for (int i = 0; i < checks.length; i++) {
+
+            org.hibernate.Query q = session.createQuery(queries[i]);
+            if (id != null) {
+                q.setLong("id", id);
+            }
+            if (groupId != null) {
+                q.setLong("group", groupId);
+            }
+
+            Long count = (Long) q.uniqueResult();
+
+            if (count != null && count.longValue() > 0) {
+                total += count;
+                counts.put(checks[i][0], count);
+            }
+        }
+        counts.put("*", total);
+        return counts;
+
+    }
+
+    public boolean hasLocks(final Session session, final Long id,
+            String[][] checks, String clause, Long groupId) {
+
+        final String[] queries = lockQueries(
+                lockQueryTemplate("x.id", id != null, clause), checks);
+
+        for (int i = 0; i < checks.length; i++) {
+            org.hibernate.Query q = session.createQuery(queries[i]);
+            if (id != null) {
+                q.setLong("id", id);
+            }
+            if (groupId != null) {
+                q.setLong("group", groupId);
+            }
+            q.setMaxResults(1);
+            if (!q.list().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    /**
+     * Builds the query shared by the single-ID lock checks. The result has
+     * two String.format arguments: the linking type and its field.
+     */
+    private String lockQueryTemplate(String select, boolean byId, String clause) {
         final QueryBuilder qb = new QueryBuilder();
-        qb.select("count(x.id)");
+        qb.select(select);
         qb.from("%s", "x");
 
         // Only one of the these two will happen, so the second replacement
         // argument to String.format will have to be check[1].
-        if (id == null) {
+        if (!byId) {
             qb.join("x.%s", "y", false, false);
         }
 
 
-        if (id != null) {
+        if (byId) {
             qb.where();
             qb.and("%s.id = :id");
         }
@@ -495,31 +593,54 @@ public static class Impl extends OnContextRefreshedEventListener implements Exte
             qb.appendSpace();
         }
 
+        return qb.queryString();
+    }
 
-        final String queryString = qb.queryString();
-        final Map<String, Long> counts = new HashMap<String, Long>();
-        long total = 0L;
+    /**
+     * Formats the given template once for each of the checks, reusing
+     * previously formatted queries for the same template and checks.
+     */
+    private String[] lockQueries(String template, String[][] checks) {
+        final LockQueryKey key = new LockQueryKey(template, checks);
+        String[] queries = lockQueryHolder.get(key);
+        if (queries == null) {
+            queries = new String[checks.length];
+            for (int i = 0; i < checks.length; i++) {
+                queries[i] = String.format(template, checks[i][0], checks[i][1]);
+            }
+            lockQueryHolder.put(key, queries);
+        }
+        return queries;
+    }
 
-        // run the individual queries
-        for (final String[] check : checks) {
+    /**
+     * Key for {@link Impl#lockQueryHolder}: the lock checks are compared by
+     * identity since each class' checks are a single cached array.
+     */
+    private static final class LockQueryKey {
 
-            final String hql = String.format(queryString, check[0], check[1]);
+        private final String template;
 
-            org.hibernate.Query q = session.createQuery(hql);
-            if (id != null) {
-                q.setLong("id", id);
-            }
+        private final String[][] checks;
 
-            Long count = (Long) q.uniqueResult();
+        LockQueryKey(String template, String[][] checks) {
+            this.template = template;
+            this.checks = checks;
+        }
 
-            if (count != null && count.longValue() > 0) {
-                total += count;
-                counts.put(check[0], count);
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof LockQueryKey)) {
+                return false;
             }
+            final LockQueryKey other = (LockQueryKey) obj;
+            return checks == other.checks && template.equals(other.template);
         }
-        counts.put("*", total);
-        return counts;
 
+        @Override
+        public int hashCode() {
+            return 31 * template.hashCode() + System.identityHashCode(checks);
+        }
     }
 
     public String[] getImmutableFields(Class<? extends IObject> klass) {
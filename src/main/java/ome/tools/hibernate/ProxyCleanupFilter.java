@@ -7,16 +7,21 @@ package ome.tools.hibernate;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import ome.api.StatefulServiceInterface;
 import ome.model.IObject;
 import ome.model.internal.Details;
+import ome.model.internal.Permissions;
+import ome.model.internal.Primitive;
 import ome.model.meta.Node;
 import ome.model.meta.Session;
 import ome.model.meta.Share;
@@ -44,18 +49,39 @@ import org.hibernate.collection.AbstractPersistentCollection;
  * As of 4.4.0, this class is also responsible for various security-based
  * modifications to returned {@link Details} objects.
  *
+ * Since large results are dominated by their field values, the types which
+ * can never hold a proxy (strings, numbers, dates, units, etc.) are
+ * classified once per class and returned without entering the
+ * {@link ContextFilter} machinery. Initialized Hibernate collections are
+ * filtered straight into their detached copy rather than being filtered in
+ * place and then copied.
+ *
  * @author Josh Moore, josh at glencoesoftware.com
  * @since 1.0
  * @see <a href="https://trac.openmicroscopy.org/ome/ticket/8277">Trac ticket #8277</a>
  */
 public class ProxyCleanupFilter extends ContextFilter {
 
+    /**
+     * Whether values of a given class are passed through unchanged by every
+     * filter. Shared by all instances since it depends only on the class.
+     */
+    private static final ConcurrentMap<Class<?>, Boolean> LEAF_TYPES =
+            new ConcurrentHashMap<Class<?>, Boolean>();
+
     protected Map unloadedObjectCache = new IdentityHashMap();
 
+    /** Detached copies of the Hibernate collections already filtered. */
+    protected final Map<Collection, Collection> collectionCopies =
+            new IdentityHashMap<Collection, Collection>();
+
     protected final ACLVoter acl;
 
     protected final CurrentDetails current;
 
+    /** Looked up on the first {@link Session} filtered. */
+    private EventContext ec;
+
     /**
      * Passes {@code null}s to {@link ProxyCleanupFilter#ProxyCleanupFilter(ACLVoter, CurrentDetails)}
      * such that all restricted objects will be unloaded.
@@ -75,6 +101,36 @@ public class ProxyCleanupFilter extends ContextFilter {
         this.current = current;
     }
 
+    /**
+     * @param type the class of a field value
+     * @return if values of the given type can contain neither proxies nor
+     *         objects which need security processing
+     */
+    protected static boolean isLeaf(Class<?> type) {
+        Boolean leaf = LEAF_TYPES.get(type);
+        if (leaf == null) {
+            leaf = String.class == type
+                    || Number.class.isAssignableFrom(type)
+                    || Boolean.class == type
+                    || Character.class == type
+                    || Date.class.isAssignableFrom(type)
+                    || Enum.class.isAssignableFrom(type)
+                    || Primitive.class.isAssignableFrom(type)
+                    || Permissions.class.isAssignableFrom(type)
+                    || (type.isArray() && type.getComponentType().isPrimitive());
+            LEAF_TYPES.putIfAbsent(type, leaf);
+        }
+        return leaf.booleanValue();
+    }
+
+    @Override
+    public Object filter(String fieldId, Object o) {
+        if (o == null || isLeaf(o.getClass())) {
+            return o;
+        }
+        return super.filter(fieldId, o);
+    }
+
     @Override
     public Filterable filter(String fieldId, Filterable f) {
         if (f == null) {
@@ -142,7 +198,9 @@ public class ProxyCleanupFilter extends ContextFilter {
                 } else if (acl == null) {
                     return new Session(session.getId(), false);
                 } else {
-                    EventContext ec = current.getCurrentEventContext();
+                    if (ec == null) {
+                        ec = current.getCurrentEventContext();
+                    }
                     if (!ec.isCurrentUserAdmin()) {
                         Long uid = session.getOwner().getId();
                         if (!ec.getCurrentUserId().equals(uid)) {
@@ -167,6 +225,25 @@ public class ProxyCleanupFilter extends ContextFilter {
             return null;
         }
 
+        // ticket:61 : Hibernate collections are replaced by a plain copy,
+        // so build it in one pass and leave the original untouched.
+        if (c instanceof AbstractPersistentCollection
+                && (c instanceof Set || c instanceof List)) {
+            Collection copy = collectionCopies.get(c);
+            if (copy == null) {
+                if (c instanceof Set) {
+                    copy = new HashSet(Math.max(16, (int) (c.size() / .75f) + 1));
+                } else {
+                    copy = new ArrayList(c.size());
+                }
+                collectionCopies.put(c, copy);
+                for (Object item : c) {
+                    copy.add(this.filter(fieldId, item));
+                }
+            }
+            return copy;
+        }
+
         Collection retVal = super.filter(fieldId, c);
 
         // ticket:61 : preventing Hibernate collection types from escaping.
@@ -6,6 +6,9 @@
  */
 package ome.server.itests.sessions;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import junit.framework.TestCase;
 import ome.model.meta.Experimenter;
 import ome.server.itests.ManagedContextFixture;
@@ -33,19 +36,20 @@ public class SessionStatsIntegrationTest extends TestCase {
     }
     
     @Test
-    public void testTooManyLoads() {
-        final boolean[] called = new boolean[]{false};
+    public void testTooManyLoads() throws InterruptedException {
+        // Messages are published on the statsPublishExecutor thread.
+        final CountDownLatch called = new CountDownLatch(1);
         ApplicationEventMulticaster mc = (ApplicationEventMulticaster) fixture.ctx.getBean("applicationEventMulticaster");
         mc.addApplicationListener(new ApplicationListener(){
             public void onApplicationEvent(ApplicationEvent arg0) {
                 if (arg0 instanceof ObjectsReadStatsMessage) {
-                    called[0] = true;
+                    called.countDown();
                 }
             }});
         for (int i = 0; i < 10001; i++) {
             fixture.managedSf.getQueryService().get(Experimenter.class, 1L);
         }
-        assertTrue(called[0]);
+        assertTrue(called.await(10, TimeUnit.SECONDS));
     }
 
 }
@@ -91,7 +91,7 @@ public class JobHandleMockTest extends MockObjectTestCase {
                 returnValue(ec));
         mockUpdate.expects(once()).method("saveAndReturnObject").will(
                 returnValue(new ImportJob(1L, true)));
-        mockPm.expects(once()).method("process");
+        mockPm.expects(once()).method("jobSubmitted");
         jh.submit(new ImportJob());
         cleanup();
     }
@@ -0,0 +1,146 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package ome.server.utests;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import ome.api.local.LocalQuery;
+import ome.logic.MetadataImpl;
+import ome.model.acquisition.Arc;
+import ome.model.acquisition.FilterSet;
+import ome.model.acquisition.Laser;
+import ome.model.acquisition.LightPath;
+import ome.model.acquisition.LightSettings;
+import ome.model.acquisition.LightSource;
+import ome.model.annotations.FileAnnotation;
+import ome.model.core.LogicalChannel;
+import ome.model.core.OriginalFile;
+
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that {@link MetadataImpl} loads related objects in batches rather
+ * than with one query each.
+ */
+@Test(groups = { "unit" })
+public class MetadataImplTest extends MockObjectTestCase {
+
+    MetadataImpl impl;
+
+    Mock queryMock;
+
+    @BeforeMethod
+    public void setup() {
+        queryMock = mock(LocalQuery.class);
+        impl = new MetadataImpl();
+        impl.setQueryService((LocalQuery) queryMock.proxy());
+    }
+
+    private LogicalChannel channel(long id, LightSource source) {
+        LightSettings settings = new LightSettings();
+        settings.setLightSource(source);
+        LogicalChannel channel = new LogicalChannel(id, true);
+        channel.setLightSourceSettings(settings);
+        return channel;
+    }
+
+    private Laser laser(long id, boolean loaded) {
+        return new Laser(id, loaded);
+    }
+
+    private Arc arc(long id, boolean loaded) {
+        return new Arc(id, loaded);
+    }
+
+    @Test
+    public void testLightSourcesLoadedPerKind() {
+        LogicalChannel first = channel(1L, laser(11L, false));
+        LogicalChannel second = channel(2L, arc(12L, false));
+        LogicalChannel third = channel(3L, laser(13L, false));
+        Laser laser11 = laser(11L, true);
+        laser11.setPump(arc(15L, false));
+        Laser laser13 = laser(13L, true);
+        Arc arc12 = arc(12L, true);
+        Arc arc15 = arc(15L, true);
+
+        queryMock.expects(once()).method("findAllByQuery")
+                .with(stringContains("from LogicalChannel"), ANYTHING)
+                .will(returnValue(Arrays.asList(first, second, third)));
+        queryMock.expects(once()).method("findAllByQuery")
+                .with(stringContains("from Laser"), ANYTHING)
+                .will(returnValue(Arrays.asList(laser11, laser13)));
+        queryMock.expects(exactly(2)).method("findAllByQuery")
+                .with(stringContains("from Arc"), ANYTHING)
+                .will(onConsecutiveCalls(
+                        returnValue(Collections.singletonList(arc12)),
+                        returnValue(Collections.singletonList(arc15))));
+
+        Set<Long> ids = new HashSet<Long>(Arrays.asList(1L, 2L, 3L));
+        impl.loadChannelAcquisitionData(ids);
+        queryMock.verify();
+
+        assertSame(laser11, first.getLightSourceSettings().getLightSource());
+        assertSame(arc12, second.getLightSourceSettings().getLightSource());
+        assertSame(laser13, third.getLightSourceSettings().getLightSource());
+        assertSame(arc15, laser11.getPump());
+    }
+
+    @Test
+    public void testFilterLinksLoadedSeparately() {
+        LogicalChannel first = new LogicalChannel(1L, true);
+        first.setFilterSet(new FilterSet(21L, false));
+        first.setLightPath(new LightPath(31L, false));
+        LogicalChannel second = new LogicalChannel(2L, true);
+        second.setFilterSet(new FilterSet(22L, false));
+
+        queryMock.expects(once()).method("findAllByQuery")
+                .with(stringContains("from LogicalChannel"), ANYTHING)
+                .will(returnValue(Arrays.asList(first, second)));
+        // one query each for the emission and the excitation filters
+        queryMock.expects(exactly(2)).method("findAllByQuery")
+                .with(stringContains("from FilterSet"), ANYTHING)
+                .will(returnValue(Collections.emptyList()));
+        queryMock.expects(exactly(2)).method("findAllByQuery")
+                .with(stringContains("from LightPath"), ANYTHING)
+                .will(returnValue(Collections.emptyList()));
+
+        Set<Long> ids = new HashSet<Long>(Arrays.asList(1L, 2L));
+        impl.loadChannelAcquisitionData(ids);
+        queryMock.verify();
+    }
+
+    @Test
+    public void testOriginalFilesLoadedTogether() {
+        FileAnnotation a = new FileAnnotation(1L, true);
+        a.setFile(new OriginalFile(10L, false));
+        FileAnnotation b = new FileAnnotation(2L, true);
+        b.setFile(new OriginalFile(20L, false));
+        FileAnnotation c = new FileAnnotation(3L, true);
+        c.setFile(new OriginalFile(10L, false));
+        OriginalFile file10 = new OriginalFile(10L, true);
+        OriginalFile file20 = new OriginalFile(20L, true);
+
+        queryMock.expects(once()).method("findAllByQuery")
+                .with(stringContains("from Annotation"), ANYTHING)
+                .will(returnValue(Arrays.asList(a, b, c)));
+        queryMock.expects(once()).method("findAllByQuery")
+                .with(stringContains("from OriginalFile"), ANYTHING)
+                .will(returnValue(Arrays.asList(file10, file20)));
+
+        Set<Long> ids = new HashSet<Long>(Arrays.asList(1L, 2L, 3L));
+        impl.loadAnnotation(ids);
+        queryMock.verify();
+
+        assertSame(file10, a.getFile());
+        assertSame(file20, b.getFile());
+        assertSame(file10, c.getFile());
+    }
+}
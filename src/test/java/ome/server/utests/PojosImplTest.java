@@ -0,0 +1,79 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package ome.server.utests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import ome.api.local.LocalQuery;
+import ome.logic.PojosImpl;
+import ome.model.IObject;
+import ome.model.containers.Dataset;
+import ome.model.containers.Project;
+import ome.parameters.Parameters;
+import ome.services.query.Query;
+import ome.services.query.QueryFactory;
+
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that {@link PojosImpl#loadContainerHierarchy(Class, Set, Parameters)}
+ * finds orphans correctly when their links are looked up in batches.
+ */
+@Test(groups = { "unit" })
+public class PojosImplTest extends MockObjectTestCase {
+
+    PojosImpl impl;
+
+    Mock queryMock;
+
+    @BeforeMethod
+    public void setup() {
+        queryMock = mock(LocalQuery.class);
+        impl = new PojosImpl();
+        impl.setQueryService((LocalQuery) queryMock.proxy());
+        impl.setQueryFactory(new QueryFactory() {
+            @Override
+            public <T> Query<T> lookup(String queryID, Parameters params) {
+                return null; // Only passed to the mock query service.
+            }
+        });
+    }
+
+    @Test
+    public void testOrphansOfOneProjectAcrossBatches() {
+        // More datasets than fit in one batch, all but one in a project
+        // which is not itself returned, e.g. as it has another owner.
+        final List<IObject> datasets = new ArrayList<IObject>();
+        final List<Object[]> linked = new ArrayList<Object[]>();
+        for (long id = 1; id <= 1500; id++) {
+            datasets.add(new Dataset(id, true));
+            linked.add(new Object[] { id });
+        }
+        final Dataset orphan = new Dataset(2000L, true);
+        datasets.add(orphan);
+
+        queryMock.expects(exactly(2)).method("execute").will(onConsecutiveCalls(
+                returnValue(new ArrayList<IObject>()), returnValue(datasets)));
+        // Whichever batch reports them, linked datasets are not orphans.
+        queryMock.expects(exactly(2)).method("projection")
+                .with(stringContains("ProjectDatasetLink"), ANYTHING)
+                .will(onConsecutiveCalls(returnValue(linked),
+                        returnValue(Collections.emptyList())));
+        queryMock.expects(once()).method("findAllByQuery")
+                .with(stringContains("from Dataset d"), ANYTHING)
+                .will(returnValue(Collections.emptyList()));
+
+        Set<?> result = impl.loadContainerHierarchy(Project.class, null,
+                new Parameters().exp(1L).orphan());
+        queryMock.verify();
+        assertEquals(Collections.singleton(orphan), result);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package ome.server.utests;
+
+import java.io.File;
+
+import ome.conditions.InternalException;
+import ome.conditions.ResourceError;
+import ome.logic.RepositoryInfoImpl;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups = { "unit" })
+public class RepositoryInfoImplTest {
+
+    private RepositoryInfoImpl impl(String datadir, double criticalUsage) {
+        RepositoryInfoImpl impl = new RepositoryInfoImpl();
+        impl.setDatadir(datadir);
+        impl.setCriticalUsage(criticalUsage);
+        return impl;
+    }
+
+    private String tmp() {
+        return System.getProperty("java.io.tmpdir");
+    }
+
+    @Test
+    public void testFreeSpaceIsSampled() {
+        RepositoryInfoImpl impl = impl(tmp(), 100.0);
+        Assert.assertTrue(impl.getFreeSpaceInKilobytes() >= 0);
+        // Disabled check passes however full the disk
+        impl.sanityCheckRepository();
+    }
+
+    @Test(expectedExceptions = ResourceError.class)
+    public void testWritesRefusedWhenNearlyFull() {
+        // Any real disk is fuller than 0% so the check must fail
+        impl(tmp(), -1.0).sanityCheckRepository();
+    }
+
+    @Test(expectedExceptions = InternalException.class)
+    public void testMissingDataDirectory() {
+        File missing = new File(tmp(), "missing-" + System.nanoTime());
+        impl(missing.getPath(), 100.0).getFreeSpaceInKilobytes();
+    }
+}
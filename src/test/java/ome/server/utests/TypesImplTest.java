@@ -0,0 +1,134 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package ome.server.utests;
+
+import java.util.Arrays;
+
+import ome.api.local.LocalQuery;
+import ome.api.local.LocalUpdate;
+import ome.conditions.ApiUsageException;
+import ome.logic.TypesImpl;
+import ome.model.enums.PixelsType;
+
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "unit" })
+public class TypesImplTest extends MockObjectTestCase {
+
+    TypesImpl impl;
+
+    Mock queryMock, updateMock;
+
+    @BeforeMethod
+    public void setup() {
+        queryMock = mock(LocalQuery.class);
+        updateMock = mock(LocalUpdate.class);
+        impl = new TypesImpl();
+        impl.setQueryService((LocalQuery) queryMock.proxy());
+        impl.setUpdateService((LocalUpdate) updateMock.proxy());
+    }
+
+    private PixelsType type(long id, String value) {
+        PixelsType type = new PixelsType(value);
+        type.setId(id);
+        return type;
+    }
+
+    private void inDatabase(int times) {
+        queryMock.expects(exactly(times)).method("findAll")
+                .will(returnValue(Arrays.asList(type(1L, "uint8"),
+                        type(2L, "int16"))));
+    }
+
+    private void inSession(PixelsType type) {
+        queryMock.expects(once()).method("find")
+                .with(eq(PixelsType.class), eq(type.getId()))
+                .will(returnValue(type));
+    }
+
+    @Test
+    public void testEnumerationsAreLoadedOnceAndEntriesById() {
+        inDatabase(1);
+        PixelsType uint8 = type(1L, "uint8");
+        PixelsType int16 = type(2L, "int16");
+        // Only the query by value is saved: each lookup still loads the
+        // entry of the caller's session by id.
+        inSession(uint8);
+        inSession(int16);
+        inSession(uint8);
+        assertSame(uint8, impl.getEnumeration(PixelsType.class, "uint8"));
+        assertSame(int16, impl.getEnumeration(PixelsType.class, "int16"));
+        assertSame(uint8, impl.getEnumeration(PixelsType.class, "uint8"));
+        queryMock.verify();
+    }
+
+    @Test
+    public void testDeletedEntryReloads() {
+        inDatabase(2);
+        inSession(type(1L, "uint8"));
+        impl.getEnumeration(PixelsType.class, "uint8");
+        // Before and after the reload
+        queryMock.expects(exactly(2)).method("find")
+                .with(eq(PixelsType.class), eq(1L))
+                .will(returnValue(null));
+        try {
+            impl.getEnumeration(PixelsType.class, "uint8");
+            fail("deleted enumeration");
+        } catch (ApiUsageException expected) {
+            // The reload still lists it, but it cannot be found again
+        }
+        queryMock.verify();
+    }
+
+    @Test
+    public void testMissingValueReloadsBeforeFailing() {
+        impl.setMissReloadInterval(0);
+        inDatabase(2);
+        inSession(type(1L, "uint8"));
+        impl.getEnumeration(PixelsType.class, "uint8");
+        try {
+            impl.getEnumeration(PixelsType.class, "float");
+            fail("missing enumeration");
+        } catch (ApiUsageException expected) {
+            // Neither cached nor in the database
+        }
+        queryMock.verify();
+    }
+
+    @Test
+    public void testMissingValueDoesNotReloadEachTime() {
+        inDatabase(1);
+        inSession(type(1L, "uint8"));
+        impl.getEnumeration(PixelsType.class, "uint8");
+        for (int i = 0; i < 3; i++) {
+            try {
+                impl.getEnumeration(PixelsType.class, "float");
+                fail("missing enumeration");
+            } catch (ApiUsageException expected) {
+                // Known to be missing since the load just now
+            }
+        }
+        queryMock.verify();
+    }
+
+    @Test
+    public void testUpdateInvalidates() {
+        inDatabase(2);
+        PixelsType uint8 = type(1L, "uint8");
+        inSession(uint8);
+        impl.getEnumeration(PixelsType.class, "uint8");
+        updateMock.expects(once()).method("saveAndReturnObject")
+                .will(returnValue(uint8));
+        impl.updateEnumeration(uint8);
+        inSession(uint8);
+        impl.getEnumeration(PixelsType.class, "uint8");
+        queryMock.verify();
+        updateMock.verify();
+    }
+
+}
@@ -17,6 +17,7 @@ import ome.services.fulltext.PdfParser;
 import ome.services.messages.RegisterServiceCleanupMessage;
 import ome.system.OmeroContext;
 
+import org.apache.commons.io.FileUtils;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.util.ResourceUtils;
@@ -46,6 +47,82 @@ public class FileParserUnitTest extends TestCase {
         list.clear();
     }
 
+    private String read(PdfParser parser, File file) throws Exception {
+        StringBuffer sb = new StringBuffer();
+        for (Reader reader : parser.parse(file)) {
+            BufferedReader buffered = new BufferedReader(reader);
+            sb.append(buffered.readLine());
+        }
+        for (RegisterServiceCleanupMessage cleanup : list) {
+            cleanup.close();
+        }
+        list.clear();
+        return sb.toString();
+    }
+
+    @Test
+    public void testPdfTextCached() throws Exception {
+        File abc123 = ResourceUtils
+                .getFile("classpath:ome/server/fileparsers/ABC123.pdf");
+        File cache = File.createTempFile("pdftext", "");
+        cache.delete();
+        PdfParser parser = new PdfParser();
+        parser.setApplicationContext(new OmeroContext(
+                "classpath:ome/server/fileparsers/config.xml"));
+        parser.setCacheDir(cache.getPath());
+        parser.setCacheSize(1024 * 1024);
+        try {
+            assertEquals("ABC123", read(parser, abc123));
+            File[] cached = cache.listFiles();
+            assertEquals(1, cached.length);
+            // A second parse must use the cached text rather than the PDF.
+            FileUtils.writeStringToFile(cached[0], "CACHED");
+            assertEquals("CACHED", read(parser, abc123));
+        } finally {
+            parser.destroy();
+            FileUtils.deleteQuietly(cache);
+        }
+    }
+
+    @Test
+    public void testPdfTextCachePruned() throws Exception {
+        File abc123 = ResourceUtils
+                .getFile("classpath:ome/server/fileparsers/ABC123.pdf");
+        File cache = File.createTempFile("pdftext", "");
+        cache.delete();
+        cache.mkdirs();
+        File recent = new File(cache, "recent.txt");
+        FileUtils.writeStringToFile(recent, "RECENT");
+        File unused = new File(cache, "unused.txt");
+        FileUtils.writeStringToFile(unused, "UNUSED");
+        unused.setLastModified(System.currentTimeMillis() - 8 * 24 * 3600 * 1000L);
+        PdfParser parser = new PdfParser();
+        parser.setApplicationContext(new OmeroContext(
+                "classpath:ome/server/fileparsers/config.xml"));
+        parser.setCacheDir(cache.getPath());
+        parser.setCacheSize(1024 * 1024);
+        parser.setCacheDays(7);
+        try {
+            assertEquals("ABC123", read(parser, abc123));
+            assertFalse(unused.exists());
+            assertTrue(recent.exists());
+            assertEquals(2, cache.listFiles().length);
+            // Over its size, only the text just added is kept.
+            for (File entry : cache.listFiles()) {
+                if (!entry.equals(recent)) {
+                    entry.delete();
+                }
+            }
+            parser.setCacheSize(1);
+            assertEquals("ABC123", read(parser, abc123));
+            assertFalse(recent.exists());
+            assertEquals(1, cache.listFiles().length);
+        } finally {
+            parser.destroy();
+            FileUtils.deleteQuietly(cache);
+        }
+    }
+
     public static class Closer implements ApplicationListener {
 
         public void onApplicationEvent(ApplicationEvent arg0) {
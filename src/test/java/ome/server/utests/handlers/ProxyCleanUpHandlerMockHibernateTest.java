@@ -7,7 +7,10 @@
 
 package ome.server.utests.handlers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -99,6 +102,34 @@ public class ProxyCleanUpHandlerMockHibernateTest extends MockObjectTestCase {
         assertFalse(l instanceof PersistentIdentifierBag);
     }
 
+    @Test
+    public void testInitializedPersistentSetCopiedOnce() throws Exception {
+        Set orig = new HashSet(Arrays.asList("a", "b", 1L));
+        Set s = new PersistentSet(session, orig);
+        Set copy = (Set) filter.filter(null, s);
+        assertFalse(copy instanceof PersistentSet);
+        assertEquals(orig, copy);
+        // A collection reachable twice in the graph maps to one copy.
+        assertSame(copy, filter.filter(null, s));
+    }
+
+    @Test
+    public void testInitializedPersistentListKeepsOrder() throws Exception {
+        List orig = new ArrayList(Arrays.asList("c", "a", "b", "a"));
+        List l = new PersistentList(session, orig);
+        l = (List) filter.filter(null, l);
+        assertFalse(l instanceof PersistentList);
+        assertEquals(Arrays.asList("c", "a", "b", "a"), l);
+    }
+
+    @Test
+    public void testLeafValuesPassThrough() throws Exception {
+        String str = "value";
+        byte[] bytes = new byte[] { 1, 2 };
+        assertSame(str, filter.filter(null, (Object) str));
+        assertSame(bytes, filter.filter(null, (Object) bytes));
+    }
+
     /*
      * exist also as subclasses of AbstractPersistentCollection -
      * PersistentArrayHolder -- deprecated - PersistentElementHolder -- ?? -
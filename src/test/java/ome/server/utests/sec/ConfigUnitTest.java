@@ -163,6 +163,92 @@ public class ConfigUnitTest extends MockObjectTestCase {
         assertEquals("OMERO.test",config.getConfigValue("omero.name"));
     }
     
+    @Test
+    public void testDatabaseValuesAreCachedUntilSet() {
+        ((ConfigImpl) config).setCacheTimeout(60000);
+        String test = UUID.randomUUID().toString()+"-config-test";
+
+        inDatabase("old");
+        assertEquals("old", config.getInternalValue(test));
+        assertEquals("old", config.getInternalValue(test));
+
+        // Writes read the database rather than the cache
+        inDatabase("old");
+        updateDb(1);
+        config.setConfigValue(test, "new");
+
+        inDatabase("new");
+        assertEquals("new", config.getInternalValue(test));
+        assertEquals("new", config.getInternalValue(test));
+    }
+
+    @Test
+    public void testSetConfigIfEqualsIgnoresCachedValue() {
+        ((ConfigImpl) config).setCacheTimeout(60000);
+        String test = UUID.randomUUID().toString()+"-config-test";
+
+        inDatabase("old");
+        assertEquals("old", config.getInternalValue(test));
+
+        // Changed by another server since it was cached
+        inDatabase("other");
+        assertFalse(config.setConfigValueIfEquals(test, "new", "old"));
+        sqlMock.verify();
+    }
+
+    @Test
+    public void testCachedValuesAreDroppedWhenStampChanges() {
+        ((ConfigImpl) config).setCacheTimeout(60000);
+        ((ConfigImpl) config).setCacheStamp(true);
+        ((ConfigImpl) config).setCacheStampInterval(0);
+        String test = UUID.randomUUID().toString()+"-config-test";
+
+        // Nothing cached for the first lookup, so no stamp is read. The
+        // first stamp read drops the value cached before it.
+        sqlMock.expects(exactly(3)).method("configValue")
+                .with(eq("omero.config.stamp"))
+                .will(onConsecutiveCalls(returnValue("1"), returnValue("1"),
+                        returnValue("2")));
+        sqlMock.expects(exactly(3)).method("configValue").with(eq(test))
+                .will(returnValue("value"));
+        for (int i = 0; i < 4; i++) {
+            assertEquals("value", config.getInternalValue(test));
+        }
+        sqlMock.verify();
+    }
+
+    @Test
+    public void testStampIsReadAtMostOncePerInterval() {
+        ((ConfigImpl) config).setCacheTimeout(60000);
+        ((ConfigImpl) config).setCacheStamp(true);
+        ((ConfigImpl) config).setCacheStampInterval(60000);
+        String test = UUID.randomUUID().toString()+"-config-test";
+
+        sqlMock.expects(once()).method("configValue")
+                .with(eq("omero.config.stamp")).will(returnValue("1"));
+        sqlMock.expects(exactly(2)).method("configValue").with(eq(test))
+                .will(returnValue("value"));
+        for (int i = 0; i < 4; i++) {
+            assertEquals("value", config.getInternalValue(test));
+        }
+        sqlMock.verify();
+    }
+
+    @Test
+    public void testKeysNotInDatabaseMakeNoQueries() {
+        mockAdmin();
+        ((ConfigImpl) config).setCacheTimeout(60000);
+        ((ConfigImpl) config).setCacheStamp(true);
+        ((ConfigImpl) config).setCacheStampInterval(0);
+
+        // No configValue expectations: any call fails the test.
+        for (int i = 0; i < 3; i++) {
+            assertEquals("omero", config.getInternalValue("omero.db.pass"));
+            config.getConfigValues("^omero\\.db\\.host$");
+        }
+        sqlMock.verify();
+    }
+
     // Helpers
     // =========================================================================
 
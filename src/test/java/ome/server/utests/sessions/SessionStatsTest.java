@@ -5,7 +5,17 @@
 
 package ome.server.utests.sessions;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ome.system.EventContext;
 import ome.security.basic.CurrentDetails;
@@ -28,6 +38,7 @@ import org.jmock.MockObjectTestCase;
 import org.jmock.core.stub.DefaultResultStub;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationListener;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -125,6 +136,101 @@ public class SessionStatsTest extends MockObjectTestCase {
         stats.methodIn();
     }
 
+    @Test
+    public void testPublishExecutorIsUsed() {
+        final int[] executed = new int[]{0};
+        boolean[] called = readCalled();
+        ObjectsReadCounter read = read(2);
+        read.setPublishExecutor(new Executor() {
+            public void execute(Runnable command) {
+                executed[0]++;
+                command.run();
+            }});
+        read.increment(1);
+        assertEquals(0, executed[0]);
+        read.increment(1);
+        assertEquals(1, executed[0]);
+        assertTrue(called[0]);
+    }
+
+    @Test
+    public void testSampledThresholdPublishes() {
+        final AtomicInteger published = new AtomicInteger();
+        final ObjectsReadCounter read = new ObjectsReadCounter(1000);
+        read.setApplicationEventPublisher(new ApplicationEventPublisher() {
+            public void publishEvent(ApplicationEvent event) {
+                published.incrementAndGet();
+            }
+            public void publishEvent(Object event) {
+                published.incrementAndGet();
+            }});
+        for (int i = 0; i < 999; i++) {
+            read.increment(1);
+        }
+        assertEquals(0, published.get());
+        // Checked about every 16 increments, so well within another interval.
+        for (int i = 0; i < 1000; i++) {
+            read.increment(1);
+        }
+        assertEquals(1, published.get());
+        // Increments as large as the interval are always checked.
+        read.increment(1000);
+        assertEquals(2, published.get());
+    }
+
+    /**
+     * Microbenchmark of many threads incrementing the same counters, as
+     * happens for a session with many concurrent calls. Checks that no
+     * increments are lost and that the interval is respected.
+     */
+    @Test
+    public void testContendedIncrements() throws Exception {
+        final int threads = 8;
+        final int loops = 100000;
+        final AtomicInteger published = new AtomicInteger();
+        final ObjectsReadCounter read = new ObjectsReadCounter(1000);
+        read.setApplicationEventPublisher(new ApplicationEventPublisher() {
+            public void publishEvent(ApplicationEvent event) {
+                published.incrementAndGet();
+            }
+            public void publishEvent(Object event) {
+                published.incrementAndGet();
+            }});
+        final MethodCounter methods = new MethodCounter(Integer.MAX_VALUE);
+        final SessionStats stats = new SimpleSessionStats(read, null, methods);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < loops; i++) {
+                        stats.methodIn();
+                        stats.loadedObjects(1);
+                        stats.methodOut();
+                    }
+                    return null;
+                }}));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+
+        assertEquals((long) threads * loops, read.getCount());
+        assertEquals(0, stats.methodCount());
+        // Racy threshold: each interval is published at most once.
+        assertTrue(published.get() <= threads * loops / 1000);
+        assertTrue(published.get() > 0);
+        LoggerFactory.getLogger(getClass()).info(String.format(
+                "%d contended increments in %d ms", 3L * threads * loops,
+                TimeUnit.NANOSECONDS.toMillis(elapsed)));
+    }
+
     // Helpers
     // =========================================================================
     
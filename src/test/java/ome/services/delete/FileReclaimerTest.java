@@ -0,0 +1,126 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package ome.services.delete;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ome.services.delete.files.FileReclaimer;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "unit" })
+public class FileReclaimerTest {
+
+    private File root;
+
+    private File journals;
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        root = File.createTempFile("reclaimer", "");
+        root.delete();
+        root.mkdirs();
+        journals = new File(root, "journal");
+    }
+
+    @AfterMethod
+    public void teardown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    private List<File> create(int count) throws IOException {
+        final List<File> files = new ArrayList<File>();
+        for (int i = 0; i < count; i++) {
+            final File file = new File(root, "file" + i);
+            FileUtils.writeStringToFile(file, "data" + i);
+            files.add(file);
+        }
+        return files;
+    }
+
+    private void awaitEmpty(File dir) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            final String[] left = dir.list();
+            if (left == null || left.length == 0) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        Assert.fail("journal not removed");
+    }
+
+    @Test
+    public void testReclaim() throws Exception {
+        final List<File> files = create(150);
+        final FileReclaimer reclaimer = new FileReclaimer(journals, 2);
+        reclaimer.start();
+        try {
+            reclaimer.reclaim(files);
+            awaitEmpty(journals);
+            for (File file : files) {
+                Assert.assertFalse(file.exists(), file.toString());
+            }
+            Assert.assertEquals(reclaimer.getFilesDeleted(), 150);
+            Assert.assertEquals(reclaimer.getFilesFailed(), 0);
+        } finally {
+            reclaimer.stop();
+        }
+    }
+
+    @Test
+    public void testReplayOnStart() throws Exception {
+        final List<File> files = create(3);
+        journals.mkdirs();
+        final StringBuilder sb = new StringBuilder();
+        for (File file : files) {
+            sb.append(file.getAbsolutePath()).append('\n');
+        }
+        // Includes a path which was already removed before the crash.
+        sb.append(new File(root, "missing").getAbsolutePath()).append('\n');
+        FileUtils.writeStringToFile(new File(journals, "left.pending"), sb.toString());
+        FileUtils.writeStringToFile(new File(journals, "partial.tmp"),
+                files.get(0).getAbsolutePath());
+
+        final FileReclaimer reclaimer = new FileReclaimer(journals, 1);
+        reclaimer.start();
+        try {
+            for (int i = 0; i < 200 && new File(journals, "left.pending").exists(); i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertFalse(new File(journals, "left.pending").exists());
+            for (File file : files) {
+                Assert.assertFalse(file.exists(), file.toString());
+            }
+            Assert.assertEquals(reclaimer.getFilesDeleted(), 3);
+        } finally {
+            reclaimer.stop();
+        }
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        final FileReclaimer reclaimer = new FileReclaimer(journals, 0);
+        reclaimer.start();
+        Assert.assertFalse(reclaimer.isEnabled());
+        Assert.assertFalse(journals.exists());
+        reclaimer.reclaim(Collections.<File>emptyList());
+        try {
+            reclaimer.reclaim(create(1));
+            Assert.fail("should not accept files when disabled");
+        } catch (IOException expected) {
+            // The caller falls back to deleting synchronously.
+        }
+        reclaimer.stop();
+    }
+
+}
@@ -19,6 +19,7 @@
 
 package ome.services.graphs;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -990,6 +991,43 @@ public class GraphPolicyRuleTest {
         }
     }
 
+    /**
+     * Check that among many policy rules only those that match the objects under review take effect,
+     * including rules that are skipped because their classes or properties are absent from the review.
+     * @throws GraphException unexpected
+     */
+    @Test
+    public void testManyRulesSyntheticGraph() throws GraphException {
+        final List<GraphPolicyRule> rules = new ArrayList<GraphPolicyRule>();
+        for (int count = 0; count < 500; count++) {
+            rules.add(newRule("P:Project[E]", "P:[I]"));
+            rules.add(newRule("D:Dataset[E].image = Image[I]", "D:[I]"));
+            rules.add(newRule("W:Well[E].name = [E]", "W:{o}"));
+            rules.add(newRule("S:Screen[E].plateLinks = [E], C:Channel[E]", "S:[I]"));
+        }
+        rules.add(newRule("W:Well[E]{r}.plate = [E]", "W:{a}"));
+        final GraphPolicy policy = GraphPolicyRule.parseRules(mockGraphPathBean, rules);
+        final Details detailsPlate = new MockDetails(new Plate(), Action.EXCLUDE, Orphan.IRRELEVANT,
+                true, true, true, true, true, true, true);
+        final ImmutableSet.Builder<Details> wells = ImmutableSet.builder();
+        for (int count = 0; count < 100; count++) {
+            wells.add(new MockDetails(new Well(), Action.EXCLUDE, Orphan.RELEVANT,
+                    true, true, true, true, true, true, true));
+        }
+        final Set<Details> changes = policy.review(
+                ImmutableMap.<String, Set<Details>>of(Well.class.getName() + ".plate", wells.build()),
+                detailsPlate,
+                ImmutableMap.<String, Set<Details>>of(),
+                ImmutableSet.<String>of(),
+                false);
+        Assert.assertEquals(changes.size(), 100);
+        for (final Details detailsNew : changes) {
+            Assert.assertEquals(detailsNew.subject.getClass(), Well.class);
+            Assert.assertEquals(detailsNew.action, Action.EXCLUDE);
+            Assert.assertEquals(detailsNew.orphan, Orphan.IS_NOT_LAST);
+        }
+    }
+
     /**
      * Test the {@code =/o} style of operator in relationship matches.
      * @param isSameOwnership if the two model objects should have the same owner
@@ -7,6 +7,7 @@ package ome.services.ldap;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -14,6 +15,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import javax.naming.NamingException;
 
 import ome.api.local.LocalQuery;
+import ome.api.local.LocalUpdate;
 import ome.conditions.ApiUsageException;
 import ome.conditions.SecurityViolation;
 import ome.conditions.ValidationException;
@@ -162,6 +164,56 @@ public class LdapTest extends MockObjectTestCase {
         }
     }
 
+    /**
+     * With a cache timeout set, repeated synchronizations of a user should
+     * reuse the directory entry and groups loaded by the first one.
+     */
+    @Test
+    public void testSynchronizeLdapUserUsesCache() throws Exception {
+        File file = ResourceUtils
+                .getFile("classpath:ome/services/ldap/test1/test.xml");
+        Fixture fixture = createFixture(file);
+        try {
+            LdapConfig config = new LdapConfig(true, "default_group",
+                    "(objectClass=person)",
+                    "(objectClass=groupOfUniqueNames)",
+                    "omeName=cn,firstName=givenName,lastName=sn", "name=cn",
+                    true);
+            Mock role = mock(RoleProvider.class);
+            Mock query = mock(LocalQuery.class);
+            Mock update = mock(LocalUpdate.class);
+            LdapImpl ldap = new LdapImpl(fixture.template.getContextSource(),
+                    fixture.template, new Roles(), config,
+                    (RoleProvider) role.proxy(),
+                    (SqlAction) fixture.sql.proxy());
+            ldap.setQueryService((LocalQuery) query.proxy());
+            ldap.setUpdateService((LocalUpdate) update.proxy());
+            ldap.setCacheTimeout(60000);
+
+            Experimenter omeExp = new Experimenter(1L, true);
+            omeExp.setOmeName("test1");
+            query.expects(exactly(2)).method("findByString")
+                    .will(returnValue(omeExp));
+            query.expects(exactly(2)).method("projection")
+                    .will(returnValue(Collections.singletonList(
+                            new Object[] { 101L, Boolean.TRUE })));
+            update.expects(exactly(2)).method("flush");
+            role.expects(once()).method("isIgnoreCaseLookup")
+                    .will(returnValue(false));
+            role.expects(once()).method("createGroup")
+                    .will(returnValue(101L));
+            role.expects(exactly(2)).method("setGroupOwner");
+
+            ldap.synchronizeLdapUser("test1");
+            ldap.synchronizeLdapUser("test1");
+            role.verify();
+            query.verify();
+            update.verify();
+        } finally {
+            fixture.close();
+        }
+    }
+
     protected Fixture createFixture(File ctxFile) throws Exception {
         Fixture fixture = new Fixture();
         fixture.ctx = new FileSystemXmlApplicationContext("file:"
@@ -0,0 +1,184 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package ome.services.sessions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import ome.model.internal.Permissions;
+import ome.model.meta.Experimenter;
+import ome.model.meta.Node;
+import ome.model.meta.Session;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "unit" })
+public class SessionJournalTest {
+
+    private File root;
+
+    private File file;
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        root = File.createTempFile("sessions", "");
+        root.delete();
+        root.mkdirs();
+        file = new File(new File(root, "var"), "sessions.journal");
+    }
+
+    @AfterMethod
+    public void teardown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    private Session session(long id) {
+        final Session session = new Session();
+        session.setId(id);
+        session.setUuid(UUID.randomUUID().toString());
+        session.setOwner(new Experimenter(2L, false));
+        session.setNode(new Node(0L, false));
+        session.setStarted(new Timestamp(1000L * id));
+        session.setTimeToIdle(600000L);
+        session.setTimeToLive(0L);
+        session.setDefaultEventType("User");
+        session.setUserAgent("test");
+        session.getDetails().setPermissions(Permissions.PRIVATE);
+        return session;
+    }
+
+    private Map<String, Session> reopen() throws IOException {
+        final SessionJournal journal = new SessionJournal(file);
+        final Map<String, Session> sessions = new HashMap<String, Session>();
+        for (Session session : journal.open()) {
+            sessions.put(session.getUuid(), session);
+        }
+        journal.close();
+        return sessions;
+    }
+
+    @Test
+    public void testSessionsSurviveReopen() throws IOException {
+        final SessionJournal journal = new SessionJournal(file);
+        Assert.assertTrue(journal.open().isEmpty());
+        final Session kept = session(-1L);
+        final Session closed = session(-2L);
+        journal.write(kept);
+        journal.write(closed);
+        kept.setTimeToIdle(1234L);
+        kept.setSudoer(new Experimenter(0L, false));
+        journal.write(kept);
+        closed.setClosed(new Timestamp(5000L));
+        journal.write(closed);
+        journal.close();
+
+        Map<String, Session> sessions = reopen();
+        Assert.assertEquals(sessions.size(), 2);
+        final Session reloaded = sessions.get(kept.getUuid());
+        Assert.assertEquals(reloaded.getId(), kept.getId());
+        Assert.assertEquals(reloaded.getTimeToIdle(), Long.valueOf(1234L));
+        Assert.assertEquals(reloaded.getOwner().getId(), Long.valueOf(2L));
+        Assert.assertEquals(reloaded.getSudoer().getId(), Long.valueOf(0L));
+        Assert.assertEquals(reloaded.getStarted(), kept.getStarted());
+        Assert.assertNull(reloaded.getClosed());
+        Assert.assertEquals(reloaded.getUserAgent(), "test");
+        Assert.assertNull(reloaded.getMessage());
+        Assert.assertEquals(sessions.get(closed.getUuid()).getClosed(), new Timestamp(5000L));
+
+        // The closed session was dropped when the journal was compacted.
+        sessions = reopen();
+        Assert.assertEquals(sessions.keySet().iterator().next(), kept.getUuid());
+        Assert.assertEquals(sessions.size(), 1);
+    }
+
+    @Test
+    public void testTornRecordIsDiscarded() throws IOException {
+        final SessionJournal journal = new SessionJournal(file);
+        journal.open();
+        final Session first = session(-1L);
+        final Session second = session(-2L);
+        journal.write(first);
+        journal.write(second);
+        journal.close();
+
+        // Simulate a crash part-way through appending the second record.
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        final long length = raf.length();
+        raf.setLength(length - 5);
+        raf.close();
+
+        final Map<String, Session> sessions = reopen();
+        Assert.assertEquals(sessions.size(), 1);
+        Assert.assertTrue(sessions.containsKey(first.getUuid()));
+        Assert.assertTrue(file.length() < length);
+    }
+
+    @Test
+    public void testCorruptRecordEndsReplay() throws IOException {
+        final SessionJournal journal = new SessionJournal(file);
+        journal.open();
+        final Session first = session(-1L);
+        journal.write(first);
+        final long good = file.length();
+        journal.write(session(-2L));
+        journal.write(session(-3L));
+        journal.close();
+
+        // Damage a byte inside the second record's payload.
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(good + 10);
+        final int b = raf.read();
+        raf.seek(good + 10);
+        raf.write(b ^ 0xff);
+        raf.close();
+
+        final Map<String, Session> sessions = reopen();
+        Assert.assertEquals(sessions.size(), 1);
+        Assert.assertTrue(sessions.containsKey(first.getUuid()));
+    }
+
+    @Test
+    public void testLeftoverTemporaryFileIsIgnored() throws IOException {
+        final SessionJournal journal = new SessionJournal(file);
+        journal.open();
+        final Session first = session(-1L);
+        journal.write(first);
+        journal.close();
+        // A crash during compaction may leave a partial replacement behind.
+        FileUtils.writeStringToFile(new File(file.getPath() + ".tmp"), "partial");
+
+        final Map<String, Session> sessions = reopen();
+        Assert.assertEquals(sessions.size(), 1);
+        Assert.assertTrue(sessions.containsKey(first.getUuid()));
+    }
+
+    @Test
+    public void testFailedCompactionKeepsJournalOpen() throws IOException {
+        final SessionJournal journal = new SessionJournal(file);
+        journal.open();
+        // The replacement cannot be written over a directory.
+        Assert.assertTrue(new File(file.getPath() + ".tmp").mkdir());
+        final Session session = session(-1L);
+        for (int i = 0; i < 2000; i++) {
+            session.setTimeToIdle((long) i);
+            journal.write(session);
+        }
+        journal.close();
+        FileUtils.deleteQuietly(new File(file.getPath() + ".tmp"));
+
+        final Map<String, Session> sessions = reopen();
+        Assert.assertEquals(sessions.get(session.getUuid()).getTimeToIdle(),
+                Long.valueOf(1999L));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package ome.services.utests;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.imageio.ImageIO;
+
+import ome.conditions.ApiUsageException;
+import ome.logic.CompressImpl;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups = { "unit" })
+public class CompressImplTest {
+
+    private BufferedImage image(int w, int h) {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                image.setRGB(x, y, (x * 7) << 16 | (y * 3) << 8 | (x ^ y));
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void testBytesMatchStream() throws Exception {
+        CompressImpl compress = new CompressImpl();
+        BufferedImage image = image(64, 48);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        compress.compressToStream(image, stream);
+        byte[] bytes = compress.compressToBytes(image);
+        Assert.assertEquals(bytes, stream.toByteArray());
+        // Pooled writers and buffers must not leak state between calls
+        Assert.assertEquals(compress.compressToBytes(image), bytes);
+    }
+
+    @Test
+    public void testQualityChangeIsApplied() throws Exception {
+        CompressImpl compress = new CompressImpl();
+        BufferedImage image = image(128, 128);
+        compress.setCompressionLevel(0.95f);
+        byte[] high = compress.compressToBytes(image);
+        compress.setCompressionLevel(0.05f);
+        byte[] low = compress.compressToBytes(image);
+        Assert.assertTrue(low.length < high.length);
+    }
+
+    @Test
+    public void testPngIsLossless() throws Exception {
+        CompressImpl compress = new CompressImpl();
+        compress.setCompressionFormat("PNG");
+        Assert.assertEquals(compress.getCompressionFormat(), CompressImpl.PNG);
+        BufferedImage image = image(32, 32);
+        BufferedImage decoded = ImageIO.read(
+                new ByteArrayInputStream(compress.compressToBytes(image)));
+        for (int x = 0; x < 32; x++) {
+            for (int y = 0; y < 32; y++) {
+                Assert.assertEquals(decoded.getRGB(x, y), image.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testLargeImagesStillEncode() throws Exception {
+        CompressImpl compress = new CompressImpl();
+        compress.setCompressionFormat(CompressImpl.PNG);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(
+                compress.compressToBytes(image(2048, 2048))));
+        Assert.assertEquals(decoded.getWidth(), 2048);
+    }
+
+    @Test(expectedExceptions = ApiUsageException.class)
+    public void testUnknownFormat() {
+        new CompressImpl().setCompressionFormat("no-such-format");
+    }
+
+}
@@ -4,6 +4,15 @@
  */
 package ome.services.utests;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ome.services.messages.AsynchronousListener;
+import ome.services.messages.GlobalMulticaster;
+
 import org.jmock.MockObjectTestCase;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
@@ -34,6 +43,49 @@ public class GlobalMulticasterTest extends MockObjectTestCase {
 
     }
 
+    @Test
+    public void testAsynchronousListenerReceivesEventsInOrder() throws Throwable {
+        GlobalMulticaster gm = new GlobalMulticaster();
+        AsyncBean bean = new AsyncBean(100);
+        gm.addApplicationListener(bean);
+        try {
+            for (int i = 0; i < 100; i++) {
+                gm.multicastEvent(new GMEvent(i));
+            }
+            // Events of other types are filtered as for direct listeners
+            gm.multicastEvent(new ApplicationEvent(this) {});
+            assertTrue(bean.latch.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, bean.received.get(i).getSource());
+            }
+            assertEquals(100, bean.received.size());
+            assertFalse(Thread.currentThread().equals(bean.thread));
+        } finally {
+            gm.removeApplicationListener(bean);
+        }
+    }
+
+    static class AsyncBean implements ApplicationListener<GMEvent>,
+            AsynchronousListener {
+
+        final List<GMEvent> received =
+                Collections.synchronizedList(new ArrayList<GMEvent>());
+
+        final CountDownLatch latch;
+
+        volatile Thread thread;
+
+        AsyncBean(int expected) {
+            latch = new CountDownLatch(expected);
+        }
+
+        public void onApplicationEvent(GMEvent event) {
+            thread = Thread.currentThread();
+            received.add(event);
+            latch.countDown();
+        }
+    }
+
     static class GMEvent extends ApplicationEvent {
         GMEvent(Object source) {
             super(source);
@@ -0,0 +1,97 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package ome.services.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import ome.util.checksum.ChecksumProviderFactory;
+import ome.util.checksum.ChecksumProviderFactoryImpl;
+import ome.util.checksum.ChecksumType;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(groups = { "unit" })
+public class IncrementalChecksumTest {
+
+    private final ChecksumProviderFactory factory = new ChecksumProviderFactoryImpl();
+
+    private final byte[] data = new byte[100000];
+
+    public IncrementalChecksumTest() {
+        new Random(42).nextBytes(data);
+    }
+
+    private String expected(ChecksumType type, int length) {
+        return factory.getProvider(type)
+                .putBytes(Arrays.copyOf(data, length)).checksumAsString();
+    }
+
+    @DataProvider(name = "types")
+    public Object[][] types() {
+        return new Object[][] { { ChecksumType.ADLER32 },
+                { ChecksumType.CRC32 }, { ChecksumType.MD5 },
+                { ChecksumType.SHA1 } };
+    }
+
+    @Test(dataProvider = "types")
+    public void testMatchesProviderAfterEachWrite(ChecksumType type) {
+        IncrementalChecksum running = IncrementalChecksum.create(type);
+        Assert.assertNotNull(running);
+        Assert.assertEquals(running.checksumAsString(), expected(type, 0));
+        int offset = 0;
+        for (int length : new int[] { 1, 17, 4096, 30000, 65886 }) {
+            Assert.assertTrue(running.update(offset, data, offset, length));
+            offset += length;
+            Assert.assertEquals(running.getPosition(), offset);
+            // Taking the checksum must not disturb later updates
+            Assert.assertEquals(running.checksumAsString(),
+                    expected(type, offset));
+        }
+        Assert.assertEquals(offset, data.length);
+    }
+
+    @Test(dataProvider = "types")
+    public void testOutOfOrderWriteNeedsRehash(ChecksumType type) throws Exception {
+        IncrementalChecksum running = IncrementalChecksum.create(type);
+        Assert.assertTrue(running.update(0, data, 0, 100));
+        Assert.assertFalse(running.update(50, data, 50, 100));
+        Assert.assertFalse(running.isValid());
+        Assert.assertFalse(running.update(150, data, 150, 100));
+
+        File f = File.createTempFile("incremental", ".bin");
+        try {
+            FileUtils.writeByteArrayToFile(f, Arrays.copyOf(data, 1000));
+            running.rehash(f);
+            Assert.assertTrue(running.isValid());
+            Assert.assertEquals(running.getPosition(), 1000);
+            Assert.assertEquals(running.checksumAsString(), expected(type, 1000));
+            // Appends continue from the rehashed state
+            Assert.assertTrue(running.update(1000, data, 1000, 500));
+            Assert.assertEquals(running.checksumAsString(), expected(type, 1500));
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testUnsupportedTypes() {
+        Assert.assertNull(IncrementalChecksum.create(ChecksumType.MURMUR32));
+        Assert.assertNull(IncrementalChecksum.create(ChecksumType.MURMUR128));
+        Assert.assertNull(IncrementalChecksum.create(ChecksumType.FILE_SIZE));
+        Assert.assertNull(IncrementalChecksum.create(null));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testInvalidStateHasNoChecksum() {
+        IncrementalChecksum running = IncrementalChecksum.create(ChecksumType.MD5);
+        running.invalidate();
+        running.checksumAsString();
+    }
+}
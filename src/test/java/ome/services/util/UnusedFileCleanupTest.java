@@ -0,0 +1,126 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package ome.services.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "unit" })
+public class UnusedFileCleanupTest {
+
+    private File root;
+
+    private File checkpoint;
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        root = File.createTempFile("cleanup", "");
+        root.delete();
+        root.mkdirs();
+        checkpoint = new File(root, ".removeUnusedFiles");
+    }
+
+    @AfterMethod
+    public void teardown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    /** Records the IDs removed, failing on a given ID if set. */
+    private static class Recorder implements UnusedFileCleanup.Removal {
+
+        final List<Long> removed = Collections.synchronizedList(new ArrayList<Long>());
+
+        volatile Long failOn;
+
+        public void remove(List<Long> ids) {
+            if (failOn != null && ids.contains(failOn)) {
+                throw new IllegalStateException("cannot remove " + failOn);
+            }
+            removed.addAll(ids);
+        }
+    }
+
+    private static List<Long> range(long from, long to) {
+        final List<Long> ids = new ArrayList<Long>();
+        for (long id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void testRemovesEverythingInBatches() throws Exception {
+        final Recorder files = new Recorder();
+        final Recorder pixels = new Recorder();
+        final List<Long> fileIds = range(1, 250);
+        Collections.shuffle(fileIds);
+        final UnusedFileCleanup cleanup = new UnusedFileCleanup(checkpoint, 3, 10);
+        cleanup.add("files", fileIds, files);
+        cleanup.add("pixels", Arrays.asList(5L, 5L, 6L), pixels);
+        cleanup.add("thumbnails", null, new Recorder());
+        final Map<String, Integer> counts = cleanup.run();
+        Assert.assertEquals(counts.get("files"), Integer.valueOf(250));
+        Assert.assertEquals(counts.get("pixels"), Integer.valueOf(2));
+        Assert.assertEquals(counts.get("thumbnails"), Integer.valueOf(0));
+        final List<Long> removed = new ArrayList<Long>(files.removed);
+        Collections.sort(removed);
+        Assert.assertEquals(removed, range(1, 250));
+        Assert.assertEquals(pixels.removed, Arrays.asList(5L, 6L));
+        Assert.assertFalse(checkpoint.exists());
+    }
+
+    @Test
+    public void testResumesAfterFailure() throws Exception {
+        final Recorder files = new Recorder();
+        final Recorder pixels = new Recorder();
+        pixels.failOn = 35L;
+        UnusedFileCleanup cleanup = new UnusedFileCleanup(checkpoint, 1, 10);
+        cleanup.add("files", range(1, 20), files);
+        cleanup.add("pixels", range(1, 50), pixels);
+        try {
+            cleanup.run();
+            Assert.fail("removal should have failed");
+        } catch (ExecutionException expected) {
+            // pixels 1 to 30 were removed before the failure
+        }
+        Assert.assertTrue(checkpoint.exists());
+        Assert.assertEquals(pixels.removed, range(1, 30));
+
+        files.removed.clear();
+        pixels.removed.clear();
+        pixels.failOn = null;
+        cleanup = new UnusedFileCleanup(checkpoint, 1, 10);
+        cleanup.add("files", range(1, 20), files);
+        cleanup.add("pixels", range(1, 50), pixels);
+        final Map<String, Integer> counts = cleanup.run();
+        Assert.assertTrue(files.removed.isEmpty());
+        Assert.assertEquals(pixels.removed, range(31, 50));
+        Assert.assertEquals(counts.get("pixels"), Integer.valueOf(20));
+        Assert.assertFalse(checkpoint.exists());
+    }
+
+    @Test
+    public void testMalformedCheckpointIsIgnored() throws Exception {
+        FileUtils.writeStringToFile(checkpoint, "garbage");
+        final Recorder files = new Recorder();
+        final UnusedFileCleanup cleanup = new UnusedFileCleanup(checkpoint, 2, 10);
+        cleanup.add("files", range(1, 5), files);
+        cleanup.run();
+        Assert.assertEquals(files.removed, range(1, 5));
+        Assert.assertFalse(checkpoint.exists());
+    }
+}